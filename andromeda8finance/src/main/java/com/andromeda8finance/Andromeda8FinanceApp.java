@@ -1,21 +1,34 @@
 package com.andromeda8finance;
 
 import javafx.application.Application;
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import javafx.util.StringConverter;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class Andromeda8FinanceApp extends Application {
 
@@ -61,6 +74,7 @@ public class Andromeda8FinanceApp extends Application {
     }
 
     public static class Transaction {
+        private long id;          // stable identity, 0 until assigned by TransactionIndex
         private LocalDate date;
         private String type;      // "Income" or "Expense" (from article)
         private String article;
@@ -68,6 +82,7 @@ public class Andromeda8FinanceApp extends Application {
         private String wallet;
         private double amount;
         private String comment;
+        private boolean reconciled; // matched against a bank statement line
 
         public Transaction() {}
 
@@ -81,6 +96,9 @@ public class Andromeda8FinanceApp extends Application {
             this.comment = comment;
         }
 
+        public long getId() { return id; }
+        public void setId(long id) { this.id = id; }
+
         public LocalDate getDate() { return date; }
         public void setDate(LocalDate date) { this.date = date; }
 
@@ -101,6 +119,9 @@ public class Andromeda8FinanceApp extends Application {
 
         public String getComment() { return comment; }
         public void setComment(String comment) { this.comment = comment; }
+
+        public boolean isReconciled() { return reconciled; }
+        public void setReconciled(boolean reconciled) { this.reconciled = reconciled; }
     }
 
     // -------------------------
@@ -110,10 +131,42 @@ public class Andromeda8FinanceApp extends Application {
     private static final ObservableList<Wallet> wallets = FXCollections.observableArrayList();
     private static final ObservableList<Transaction> transactions = FXCollections.observableArrayList();
 
+    // Canonical instances of the repeated type / article / sub-article / wallet strings
+    private static final StringDictionary dictionary = new StringDictionary();
+
+    // Primary id index and change journal; all edits and deletes go through it
+    private static final TransactionIndex transactionIndex = new TransactionIndex(transactions);
+
+    // Fingerprints of all transactions, for flagging probable duplicates
+    private static final DuplicateIndex duplicates = DuplicateIndex.fromSystemProperties();
+
+    private static final String DATA_FILE_NAME = "andromeda8finance_data.json";
+    private static final String FILTERS_FILE_NAME = "andromeda8finance_filters.properties";
+
+    // Stamp of the data file as of our last load or save; any other stamp means an external edit
+    private FileStamp knownFileStamp;
+    // Articles and wallets as of the last load, save or merge: the base of the next three-way merge
+    private List<Article> baseArticles = List.of();
+    private List<Wallet> baseWallets = List.of();
+    private LedgerRepository repository;
+    private FxStallWatchdog watchdog; // null unless enabled
+    private DataFileWatcher dataFileWatcher;
+    private static final Duration RELOAD_DEBOUNCE = Duration.millis(300);
+    // Transactions open in an editor, checked for conflicts when the file changes under them
+    private final Set<Transaction> transactionsInEditor = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean restoringSortOrder;
+
     // Main UI references
     private TableView<Transaction> transactionsTable;
     private DatePicker dpStartDate;
     private DatePicker dpEndDate;
+    private TextField tfFilter;
+    private ComboBox<String> cbSavedFilters;
+    private SavedFilters savedFilters;
+
+    // Background execution of filters, searches and reports
+    private final QueryExecutor queries = new QueryExecutor();
+    private static final Duration FILTER_DEBOUNCE = Duration.millis(150);
 
     public static void main(String[] args) {
         launch(args);
@@ -121,8 +174,24 @@ public class Andromeda8FinanceApp extends Application {
 
     @Override
     public void start(Stage primaryStage) {
-        // Load from JSON
+        // Load from the configured storage backend (JSON file by default)
+        try {
+            repository = LedgerRepository.fromSystemProperties(new File(DATA_FILE_NAME).toPath(), dictionary);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            repository = new JsonLedgerRepository(new File(DATA_FILE_NAME).toPath(), dictionary);
+        }
         loadData();
+        duplicates.bind(transactions);
+        // Only the JSON file is edited by outside tools, so only it is watched
+        if (repository instanceof JsonLedgerRepository json) {
+            try {
+                dataFileWatcher = new DataFileWatcher(json.file(), this::onDataFileChanged);
+                dataFileWatcher.start();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
 
         BorderPane root = new BorderPane();
 
@@ -136,8 +205,8 @@ public class Andromeda8FinanceApp extends Application {
         dpEndDate.setConverter(createDateConverter());
 
         // Refresh table when date filters change
-        dpStartDate.valueProperty().addListener((obs, oldVal, newVal) -> updateFilteredTransactions());
-        dpEndDate.valueProperty().addListener((obs, oldVal, newVal) -> updateFilteredTransactions());
+        dpStartDate.valueProperty().addListener((obs, oldVal, newVal) -> scheduleFilterUpdate());
+        dpEndDate.valueProperty().addListener((obs, oldVal, newVal) -> scheduleFilterUpdate());
 
         Label lblFrom = new Label("From:");
         Label lblTo = new Label("To:");
@@ -154,12 +223,63 @@ public class Andromeda8FinanceApp extends Application {
         Button btnAddTransaction = new Button("Add Transaction");
         btnAddTransaction.setOnAction(e -> openTransactionEditor(null));
 
-        topBox.getChildren().addAll(lblFrom, dpStartDate, lblTo, dpEndDate, btnArticles, btnWallets, btnAddTransaction);
-        root.setTop(topBox);
+        // Button: Statement reconciliation
+        Button btnReconcile = new Button("Reconcile");
+        btnReconcile.setOnAction(e -> openReconciliationWindow());
+
+        // Button: Export the current period
+        Button btnExport = new Button("Export");
+        btnExport.setOnAction(e -> exportCurrentView(primaryStage));
+
+        // Button: Consolidated reporting over several ledgers
+        Button btnWorkspace = new Button("Workspace");
+        btnWorkspace.setOnAction(e -> openWorkspaceWindow());
+
+        // Button: Cash-flow forecast
+        Button btnForecast = new Button("Forecast");
+        btnForecast.setOnAction(e -> openForecastWindow());
+
+        // Button: Diagnostics
+        Button btnDiagnostics = new Button("Diagnostics");
+        btnDiagnostics.setOnAction(e -> showDiagnostics());
+
+        // Shown while a background query takes noticeably long
+        ProgressIndicator queryProgress = new ProgressIndicator();
+        queryProgress.setPrefSize(20, 20);
+        queryProgress.visibleProperty().bind(queries.busyProperty());
+
+        topBox.getChildren().addAll(lblFrom, dpStartDate, lblTo, dpEndDate, btnArticles, btnWallets, btnAddTransaction,
+                btnReconcile, btnExport, btnWorkspace, btnForecast, btnDiagnostics,
+                queryProgress);
+        // Second row: filter expression and saved filters
+        try {
+            savedFilters = SavedFilters.load(new File(FILTERS_FILE_NAME).toPath());
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        tfFilter = new TextField();
+        tfFilter.setPromptText("e.g. article == \"Food\" && amount > 100 && comment ~ \"uber\"");
+        tfFilter.textProperty().addListener((obs, oldVal, newVal) -> scheduleFilterUpdate());
+        HBox.setHgrow(tfFilter, Priority.ALWAYS);
+
+        cbSavedFilters = new ComboBox<>(FXCollections.observableArrayList(
+                savedFilters == null ? List.of() : savedFilters.names()));
+        cbSavedFilters.setPromptText("Saved filters");
+        cbSavedFilters.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null && savedFilters != null) tfFilter.setText(savedFilters.get(newVal));
+        });
+
+        Button btnSaveFilter = new Button("Save Filter");
+        btnSaveFilter.setOnAction(e -> saveCurrentFilter());
+
+        HBox filterBox = new HBox(10, new Label("Filter:"), tfFilter, cbSavedFilters, btnSaveFilter);
+        filterBox.setPadding(new Insets(0, 10, 10, 10));
+        root.setTop(new VBox(topBox, filterBox));
 
         // Center: Transactions Table
         transactionsTable = new TableView<>();
         transactionsTable.setEditable(true);
+        transactionsTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
 
         TableColumn<Transaction, LocalDate> dateCol = new TableColumn<>("Date");
         dateCol.setCellValueFactory(new PropertyValueFactory<>("date"));
@@ -189,7 +309,27 @@ public class Andromeda8FinanceApp extends Application {
         commentCol.setCellValueFactory(new PropertyValueFactory<>("comment"));
         commentCol.setMinWidth(120);
 
-        transactionsTable.getColumns().addAll(dateCol, typeCol, articleCol, subArticleCol, walletCol, amountCol, commentCol);
+        TableColumn<Transaction, Boolean> reconciledCol = new TableColumn<>("Reconciled");
+        reconciledCol.setCellValueFactory(new PropertyValueFactory<>("reconciled"));
+        reconciledCol.setMinWidth(80);
+
+        transactionsTable.getColumns().addAll(dateCol, typeCol, articleCol, subArticleCol, walletCol, amountCol, commentCol,
+                reconciledCol);
+
+        // The paged list is read-only, so column sorting reorders its index (in the background)
+        transactionsTable.setSortPolicy(tv -> {
+            if (tv.getItems() instanceof PagedTransactionList paged) {
+                if (restoringSortOrder) return true;
+                List<Object> order = sortKey(tv);
+                if (order.equals(paged.order())) return true;
+                Comparator<Transaction> comparator = tv.getComparator();
+                queries.submit("sort", () -> paged.sortedSource(comparator), sorted -> {
+                    if (sorted != null && tv.getItems() == paged) paged.showSource(sorted, order);
+                }, this::showQueryError);
+                return true;
+            }
+            return TableView.DEFAULT_SORT_POLICY.call(tv);
+        });
 
         // Double-click on empty space => add new transaction
         transactionsTable.setRowFactory(tv -> {
@@ -209,11 +349,18 @@ public class Andromeda8FinanceApp extends Application {
             Transaction selected = transactionsTable.getSelectionModel().getSelectedItem();
             if (selected != null) openTransactionEditor(selected);
         });
-        MenuItem deleteItem = new MenuItem("Delete Transaction");
+        MenuItem deleteItem = new MenuItem("Delete Transaction(s)");
         deleteItem.setOnAction(e -> {
-            Transaction selected = transactionsTable.getSelectionModel().getSelectedItem();
-            if (selected != null) {
-                transactions.remove(selected);
+            List<Long> ids = new ArrayList<>();
+            for (Transaction t : transactionsTable.getSelectionModel().getSelectedItems()) {
+                ids.add(t.getId());
+            }
+            if (!ids.isEmpty()) {
+                if (ids.size() == 1) {
+                    transactionIndex.delete(ids.get(0));
+                } else {
+                    transactionIndex.deleteAll(ids);
+                }
                 saveData();
                 updateFilteredTransactions();
             }
@@ -228,12 +375,21 @@ public class Andromeda8FinanceApp extends Application {
         primaryStage.setTitle("Andromeda8Finance - Transaction History");
         primaryStage.setScene(scene);
         primaryStage.show();
+
+        watchdog = FxStallWatchdog.startIfEnabled(new File("andromeda8finance_diagnostics.log").toPath());
     }
 
     @Override
     public void stop() {
+        if (dataFileWatcher != null) dataFileWatcher.close();
         // Save on exit
         saveData();
+        queries.shutdown();
+        try {
+            repository.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     // -------------------------------------------------
@@ -312,8 +468,8 @@ public class Andromeda8FinanceApp extends Application {
                     showAlert("Article name cannot be empty.");
                     return;
                 }
-                selected.setName(newName);
-                selected.setType(cbArticleType.getValue());
+                selected.setName(dictionary.intern(newName));
+                selected.setType(dictionary.intern(cbArticleType.getValue()));
                 lvArticles.refresh();
                 saveData();
             }
@@ -339,7 +495,7 @@ public class Andromeda8FinanceApp extends Application {
             if (selected != null) {
                 String sub = tfNewSubArticle.getText().trim();
                 if (!sub.isEmpty()) {
-                    selected.getSubArticles().add(sub);
+                    selected.getSubArticles().add(dictionary.intern(sub));
                     refreshSubArticlesView(selected, lvSubArticles);
                     tfNewSubArticle.clear();
                     saveData();
@@ -459,7 +615,7 @@ public class Andromeda8FinanceApp extends Application {
                 showAlert("Initial Balance must be a valid number.");
                 return;
             }
-            temp.setName(tfName.getText().trim());
+            temp.setName(dictionary.intern(tfName.getText().trim()));
             temp.setInitialBalance(val);
 
             if (wallet == null) {
@@ -486,6 +642,10 @@ public class Andromeda8FinanceApp extends Application {
         stage.setTitle(transaction == null ? "Add Transaction" : "Edit Transaction");
 
         Transaction temp = transaction == null ? new Transaction() : cloneTransaction(transaction);
+        if (transaction != null) {
+            transactionsInEditor.add(transaction);
+            stage.setOnHidden(e -> transactionsInEditor.remove(transaction));
+        }
 
         DatePicker dpDate = new DatePicker(temp.getDate());
         dpDate.setConverter(createDateConverter());
@@ -536,6 +696,23 @@ public class Andromeda8FinanceApp extends Application {
         grid.addRow("Amount:", tfAmount);
         grid.addRow("Comment:", tfComment);
 
+        // Possible duplicates are flagged here; a second Save keeps the row anyway
+        Label lblDuplicate = new Label();
+        lblDuplicate.setStyle("-fx-text-fill: darkorange;");
+        lblDuplicate.setWrapText(true);
+        boolean[] duplicateConfirmed = {false};
+        // A confirmation covers only the row as it was when flagged
+        InvalidationListener resetConfirmation = obs -> {
+            duplicateConfirmed[0] = false;
+            lblDuplicate.setText("");
+        };
+        dpDate.valueProperty().addListener(resetConfirmation);
+        cbArticle.valueProperty().addListener(resetConfirmation);
+        cbSubArticle.valueProperty().addListener(resetConfirmation);
+        cbWallet.valueProperty().addListener(resetConfirmation);
+        tfAmount.textProperty().addListener(resetConfirmation);
+        tfComment.textProperty().addListener(resetConfirmation);
+
         Button btnSave = new Button("Save");
         btnSave.setOnAction(e -> {
             // Validate required fields
@@ -556,25 +733,37 @@ public class Andromeda8FinanceApp extends Application {
             }
 
             temp.setDate(dpDate.getValue());
-            temp.setArticle(cbArticle.getValue().getName());
-            temp.setSubArticle(cbSubArticle.getValue());
-            temp.setWallet(cbWallet.getValue() == null ? null : cbWallet.getValue().getName());
+            temp.setArticle(dictionary.intern(cbArticle.getValue().getName()));
+            temp.setSubArticle(dictionary.intern(cbSubArticle.getValue()));
+            temp.setWallet(cbWallet.getValue() == null ? null : dictionary.intern(cbWallet.getValue().getName()));
             temp.setAmount(amountVal);
             temp.setComment(tfComment.getText());
 
             // Determine type from the article
-            temp.setType(cbArticle.getValue().getType());
+            temp.setType(dictionary.intern(cbArticle.getValue().getType()));
+
+            if (!duplicateConfirmed[0]) {
+                Transaction dup = duplicates.findDuplicate(temp, transaction);
+                if (dup != null) {
+                    lblDuplicate.setText("Possible duplicate of " + describe(dup) + ". Press Save again to keep it.");
+                    duplicateConfirmed[0] = true;
+                    return;
+                }
+            }
 
-            if (transaction == null) {
-                transactions.add(temp);
+            if (transaction == null || !transactionIndex.contains(transaction)) {
+                // New, or the original was removed from the file meanwhile: save as a new row
+                transactionIndex.add(temp);
             } else {
-                transaction.setDate(temp.getDate());
-                transaction.setArticle(temp.getArticle());
-                transaction.setSubArticle(temp.getSubArticle());
-                transaction.setWallet(temp.getWallet());
-                transaction.setAmount(temp.getAmount());
-                transaction.setComment(temp.getComment());
-                transaction.setType(temp.getType());
+                transactionIndex.update(transaction.getId(), t -> {
+                    t.setDate(temp.getDate());
+                    t.setArticle(temp.getArticle());
+                    t.setSubArticle(temp.getSubArticle());
+                    t.setWallet(temp.getWallet());
+                    t.setAmount(temp.getAmount());
+                    t.setComment(temp.getComment());
+                    t.setType(temp.getType());
+                });
             }
 
             saveData();
@@ -582,7 +771,7 @@ public class Andromeda8FinanceApp extends Application {
             stage.close();
         });
 
-        VBox vbox = new VBox(10, grid, btnSave);
+        VBox vbox = new VBox(10, grid, lblDuplicate, btnSave);
         vbox.setPadding(new Insets(10));
         stage.setScene(new Scene(vbox));
         stage.show();
@@ -591,177 +780,635 @@ public class Andromeda8FinanceApp extends Application {
     // -------------------------
     // Filter & Refresh
     // -------------------------
+    /**
+     * Re-runs the filter once the date pickers have settled, so dragging through
+     * dates triggers one query instead of one per intermediate value.
+     */
+    private void scheduleFilterUpdate() {
+        queries.debounce("filter", FILTER_DEBOUNCE, this::updateFilteredTransactions);
+    }
+
     private void updateFilteredTransactions() {
-        LocalDate start = dpStartDate.getValue();
-        LocalDate end = dpEndDate.getValue();
+        Predicate<Transaction> filter = currentFilter();
+        if (filter == null) return;
+        Comparator<Transaction> comparator = transactionsTable.getComparator();
+        List<Object> order = sortKey(transactionsTable);
+
+        // Rows are materialized per visible page; the query result is just an index,
+        // sorted in the same query by the table's current sort order.
+        Transaction[] snapshot = transactions.toArray(new Transaction[0]);
+        queries.submit("filter", () -> {
+            PagedTransactionList.PageSource result = PagedTransactionList.IndexSource.filter(snapshot, filter);
+            PagedTransactionList.PageSource sorted = comparator == null ? result : result.sorted(comparator);
+            return new PagedTransactionList(result, sorted, order);
+        }, list -> {
+            // setItems clears the sort order of any list that is not a SortedList; put it
+            // back without re-sorting, and only sort if it changed while the query ran
+            List<TableColumn<Transaction, ?>> sortOrder = new ArrayList<>(transactionsTable.getSortOrder());
+            restoringSortOrder = true;
+            try {
+                transactionsTable.setItems(list);
+                transactionsTable.getSortOrder().setAll(sortOrder);
+            } finally {
+                restoringSortOrder = false;
+            }
+            if (!sortKey(transactionsTable).equals(list.order())) transactionsTable.sort();
+            transactionsTable.refresh();
+        }, this::showQueryError);
+    }
 
-        List<Transaction> filtered = transactions.stream()
-                .filter(t -> {
-                    if (start != null && t.getDate() != null && t.getDate().isBefore(start)) {
-                        return false;
-                    }
-                    if (end != null && t.getDate() != null && t.getDate().isAfter(end)) {
-                        return false;
-                    }
-                    return true;
-                })
-                .collect(Collectors.toList());
+    /**
+     * The period plus the filter expression, or null (with the field marked) if the
+     * expression does not compile.
+     */
+    private Predicate<Transaction> currentFilter() {
+        Predicate<Transaction> expression;
+        try {
+            expression = FilterExpression.compile(tfFilter.getText(), dictionary);
+        } catch (IllegalArgumentException ex) {
+            tfFilter.setStyle("-fx-text-fill: firebrick;");
+            tfFilter.setTooltip(new Tooltip(ex.getMessage()));
+            return null;
+        }
+        tfFilter.setStyle("");
+        tfFilter.setTooltip(null);
+        return periodFilter(dpStartDate.getValue(), dpEndDate.getValue()).and(expression);
+    }
+
+    private void saveCurrentFilter() {
+        String expression = tfFilter.getText();
+        if (expression == null || expression.isBlank() || savedFilters == null) return;
+        try {
+            FilterExpression.compile(expression, dictionary);
+        } catch (IllegalArgumentException ex) {
+            showAlert("Invalid filter: " + ex.getMessage());
+            return;
+        }
+        TextInputDialog dialog = new TextInputDialog(cbSavedFilters.getValue());
+        dialog.setTitle("Save Filter");
+        dialog.setHeaderText(null);
+        dialog.setContentText("Name:");
+        Optional<String> name = dialog.showAndWait().map(String::trim).filter(n -> !n.isEmpty());
+        if (name.isEmpty()) return;
+        try {
+            savedFilters.put(name.get(), expression);
+        } catch (IOException ex) {
+            showAlert("Could not save filter: " + ex.getMessage());
+            return;
+        }
+        cbSavedFilters.getItems().setAll(savedFilters.names());
+        cbSavedFilters.setValue(name.get());
+    }
+
+    // Identifies a table sort: its columns in order, each with its direction
+    private static List<Object> sortKey(TableView<Transaction> table) {
+        List<Object> key = new ArrayList<>();
+        for (TableColumn<Transaction, ?> column : table.getSortOrder()) {
+            key.add(column);
+            key.add(column.getSortType());
+        }
+        return key;
+    }
 
-        transactionsTable.setItems(FXCollections.observableArrayList(filtered));
-        transactionsTable.refresh();
+    private void showQueryError(Throwable ex) {
+        ex.printStackTrace();
+        showAlert("Query failed: " + ex.getMessage());
+    }
+
+    /**
+     * Date filter shared by the table and exports; either bound may be null.
+     */
+    static Predicate<Transaction> periodFilter(LocalDate start, LocalDate end) {
+        return t -> {
+            if (start != null && t.getDate() != null && t.getDate().isBefore(start)) {
+                return false;
+            }
+            if (end != null && t.getDate() != null && t.getDate().isAfter(end)) {
+                return false;
+            }
+            return true;
+        };
+    }
+
+    /**
+     * The amount as it affects a wallet: expenses are negative, income positive.
+     */
+    static double signedAmount(Transaction t) {
+        return "Expense".equals(t.getType()) ? -t.getAmount() : t.getAmount();
     }
 
     // -------------------------
-    // Data Persistence (JSON)
+    // Statement Reconciliation
     // -------------------------
-    private void loadData() {
-        File file = new File("andromeda8finance_data.json");
-        if (!file.exists()) {
-            articles.clear();
-            wallets.clear();
-            transactions.clear();
-            return;
-        }
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            StringBuilder jsonBuilder = new StringBuilder();
-            String line;
-            while ((line = br.readLine()) != null) {
-                jsonBuilder.append(line);
-            }
-            String json = jsonBuilder.toString();
-
-            // minimal JSON parse
-            Map<String, List<Map<String, Object>>> allData = SimpleJsonParser.parseRoot(json);
-
-            // articles
-            if (allData.containsKey("articles")) {
-                articles.clear();
-                for (Map<String, Object> map : allData.get("articles")) {
-                    Article a = new Article();
-                    a.setName((String) map.get("name"));
-                    a.setType((String) map.get("type"));
-                    if (map.get("subArticles") instanceof List) {
-                        List<String> subs = new ArrayList<>();
-                        for (Object o : (List<?>) map.get("subArticles")) {
-                            subs.add((String) o);
-                        }
-                        a.setSubArticles(subs);
-                    }
-                    articles.add(a);
+    private void openReconciliationWindow() {
+        Stage stage = new Stage();
+        stage.setTitle("Reconcile Statement");
+
+        ComboBox<Wallet> cbWallet = new ComboBox<>(wallets);
+        cbWallet.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(Wallet w) { return (w == null) ? "" : w.getName(); }
+            @Override
+            public Wallet fromString(String s) { return null; }
+        });
+        Spinner<Integer> spTolerance = new Spinner<>(0, 31, 3);
+        spTolerance.setPrefWidth(70);
+
+        TableView<StatementReconciler.Match> table = new TableView<>();
+        TableColumn<StatementReconciler.Match, String> statusCol = new TableColumn<>("Status");
+        statusCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(
+                c.getValue().status() == StatementReconciler.Status.AMBIGUOUS
+                        ? "AMBIGUOUS (" + c.getValue().candidates().size() + ")"
+                        : c.getValue().status().name()));
+        TableColumn<StatementReconciler.Match, String> lineDateCol = new TableColumn<>("Statement Date");
+        lineDateCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(
+                c.getValue().line().date().toString()));
+        TableColumn<StatementReconciler.Match, String> lineAmountCol = new TableColumn<>("Statement Amount");
+        lineAmountCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(
+                String.valueOf(c.getValue().line().amount())));
+        TableColumn<StatementReconciler.Match, String> lineDescCol = new TableColumn<>("Description");
+        lineDescCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(
+                c.getValue().line().description()));
+        TableColumn<StatementReconciler.Match, String> ledgerCol = new TableColumn<>("Ledger Transaction");
+        ledgerCol.setCellValueFactory(c -> {
+            Transaction t = c.getValue().transaction();
+            return new ReadOnlyStringWrapper(t == null ? "" :
+                    t.getDate() + " / " + t.getArticle() + " / " + t.getAmount() + " / "
+                            + (t.getComment() == null ? "" : t.getComment()));
+        });
+        ledgerCol.setMinWidth(220);
+        table.getColumns().setAll(List.of(statusCol, lineDateCol, lineAmountCol, lineDescCol, ledgerCol));
+
+        Label lblSummary = new Label();
+        StatementReconciler.Result[] lastResult = {null};
+
+        Button btnLoad = new Button("Load Statement (CSV)...");
+        btnLoad.setOnAction(e -> {
+            Wallet wallet = cbWallet.getValue();
+            if (wallet == null) {
+                showAlert("Choose a wallet first.");
+                return;
+            }
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Bank Statement");
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV (date,amount,description)", "*.csv"));
+            File file = chooser.showOpenDialog(stage);
+            if (file == null) return;
+
+            String walletName = wallet.getName();
+            int tolerance = spTolerance.getValue();
+            Transaction[] snapshot = transactions.toArray(new Transaction[0]);
+            queries.submit("reconcile", () -> {
+                List<Transaction> ledger = new ArrayList<>();
+                for (Transaction t : snapshot) {
+                    if (!t.isReconciled() && Objects.equals(t.getWallet(), walletName)) ledger.add(t);
+                }
+                List<StatementReconciler.StatementLine> lines = StatementReconciler.readCsv(file.toPath());
+                return new StatementReconciler(tolerance).reconcile(lines, ledger);
+            }, result -> {
+                lastResult[0] = result;
+                table.setItems(FXCollections.observableArrayList(result.matches()));
+                lblSummary.setText("Matched: " + result.count(StatementReconciler.Status.MATCHED)
+                        + "   Ambiguous: " + result.count(StatementReconciler.Status.AMBIGUOUS)
+                        + "   Unmatched lines: " + result.count(StatementReconciler.Status.UNMATCHED)
+                        + "   Unmatched ledger rows: " + result.unmatchedLedger().size());
+            }, ex -> showAlert("Reconciliation failed: " + ex.getMessage()));
+        });
+
+        Button btnApply = new Button("Mark Matched as Reconciled");
+        btnApply.setOnAction(e -> {
+            if (lastResult[0] == null) return;
+            int marked = 0;
+            for (StatementReconciler.Match m : lastResult[0].matches()) {
+                if (m.status() == StatementReconciler.Status.MATCHED && !m.transaction().isReconciled()
+                        && transactionIndex.update(m.transaction().getId(), t -> t.setReconciled(true))) {
+                    marked++;
                 }
             }
+            saveData();
+            updateFilteredTransactions();
+            showInfo(marked + " transactions marked as reconciled.");
+        });
 
-            // wallets
-            if (allData.containsKey("wallets")) {
-                wallets.clear();
-                for (Map<String, Object> map : allData.get("wallets")) {
-                    Wallet w = new Wallet();
-                    w.setName((String) map.get("name"));
-                    Number n = (Number) map.get("initialBalance");
-                    if (n != null) {
-                        w.setInitialBalance(n.doubleValue());
-                    }
-                    wallets.add(w);
+        HBox controls = new HBox(10, new Label("Wallet:"), cbWallet, new Label("Date tolerance (days):"), spTolerance,
+                btnLoad);
+        VBox vbox = new VBox(10, controls, table, lblSummary, btnApply);
+        vbox.setPadding(new Insets(10));
+        VBox.setVgrow(table, Priority.ALWAYS);
+        stage.setScene(new Scene(vbox, 900, 500));
+        stage.show();
+    }
+
+    // -------------------------
+    // Multi-ledger Workspace
+    // -------------------------
+    private void openWorkspaceWindow() {
+        Stage stage = new Stage();
+        stage.setTitle("Workspace");
+
+        LedgerWorkspace[] workspace = {null};
+        LedgerWorkspace.NameMapping[] mapping = {LedgerWorkspace.NameMapping.none()};
+        List<File> files = new ArrayList<>();
+
+        DatePicker dpFrom = new DatePicker(dpStartDate.getValue());
+        DatePicker dpTo = new DatePicker(dpEndDate.getValue());
+        dpFrom.setConverter(createDateConverter());
+        dpTo.setConverter(createDateConverter());
+        ComboBox<String> cbFilter = new ComboBox<>(FXCollections.observableArrayList(
+                savedFilters == null ? List.of() : savedFilters.names()));
+        cbFilter.setPromptText("All transactions");
+
+        TableView<LedgerWorkspace.ConsolidatedRow> articleTable = new TableView<>();
+        TableView<LedgerWorkspace.ConsolidatedRow> walletTable = new TableView<>();
+        TabPane tabs = new TabPane(new Tab("Net by Article", articleTable), new Tab("Balance by Wallet", walletTable));
+        tabs.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
+        Label lblStatus = new Label("No ledgers open.");
+
+        Runnable refresh = () -> {
+            LedgerWorkspace ws = workspace[0];
+            if (ws == null) return;
+            Predicate<Transaction> expression = null;
+            if (cbFilter.getValue() != null) {
+                try {
+                    expression = FilterExpression.compile(savedFilters.get(cbFilter.getValue()), dictionary);
+                } catch (IllegalArgumentException ex) {
+                    showAlert("Invalid saved filter: " + ex.getMessage());
+                    return;
                 }
             }
+            LocalDate from = dpFrom.getValue();
+            LocalDate to = dpTo.getValue();
+            Predicate<Transaction> reportExpression = expression;
+            queries.submit("workspace", () -> ws.consolidate(from, to, reportExpression), result -> {
+                List<String> names = ws.ledgers().stream().map(LedgerWorkspace.Ledger::name).toList();
+                setConsolidatedColumns(articleTable, "Article", names);
+                setConsolidatedColumns(walletTable, "Wallet", names);
+                articleTable.setItems(FXCollections.observableArrayList(result.byArticle()));
+                walletTable.setItems(FXCollections.observableArrayList(result.byWallet()));
+            }, this::showQueryError);
+        };
+
+        Runnable reload = () -> {
+            if (files.isEmpty()) return;
+            List<Path> paths = files.stream().map(File::toPath).toList();
+            LedgerWorkspace.NameMapping names = mapping[0];
+            long started = System.nanoTime();
+            queries.submit("workspace-load", () -> LedgerWorkspace.open(paths, names, dictionary), ws -> {
+                workspace[0] = ws;
+                long total = ws.ledgers().stream().mapToLong(LedgerWorkspace.Ledger::transactionCount).sum();
+                lblStatus.setText(ws.ledgers().size() + " ledgers, " + total + " transactions, loaded in "
+                        + (System.nanoTime() - started) / 1_000_000 + " ms.");
+                refresh.run();
+            }, ex -> showAlert("Could not open ledgers: " + ex.getMessage()));
+        };
+
+        Button btnOpen = new Button("Open Ledgers...");
+        btnOpen.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Ledger Files");
+            chooser.getExtensionFilters().addAll(
+                    new FileChooser.ExtensionFilter("Ledgers", "*.json", "*.mv.db"),
+                    new FileChooser.ExtensionFilter("All files", "*.*"));
+            List<File> chosen = chooser.showOpenMultipleDialog(stage);
+            if (chosen == null || chosen.isEmpty()) return;
+            files.clear();
+            files.addAll(chosen);
+            reload.run();
+        });
+
+        Button btnMapping = new Button("Name Mapping...");
+        btnMapping.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Name Mapping (article.X=Y, wallet.X=Y)");
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Properties", "*.properties"));
+            File file = chooser.showOpenDialog(stage);
+            if (file == null) return;
+            try {
+                mapping[0] = LedgerWorkspace.NameMapping.load(file.toPath());
+            } catch (IOException ex) {
+                showAlert("Could not read mapping: " + ex.getMessage());
+                return;
+            }
+            reload.run();
+        });
+
+        dpFrom.valueProperty().addListener((obs, oldVal, newVal) -> refresh.run());
+        dpTo.valueProperty().addListener((obs, oldVal, newVal) -> refresh.run());
+        cbFilter.valueProperty().addListener((obs, oldVal, newVal) -> refresh.run());
 
-            // transactions
-            if (allData.containsKey("transactions")) {
-                transactions.clear();
-                for (Map<String, Object> map : allData.get("transactions")) {
-                    Transaction t = new Transaction();
-                    String dateStr = (String) map.get("date");
-                    if (dateStr != null && !dateStr.isBlank()) {
-                        t.setDate(LocalDate.parse(dateStr));
+        HBox controls = new HBox(10, btnOpen, btnMapping, new Label("From:"), dpFrom, new Label("To:"), dpTo,
+                new Label("Filter:"), cbFilter);
+        VBox vbox = new VBox(10, controls, tabs, lblStatus);
+        vbox.setPadding(new Insets(10));
+        VBox.setVgrow(tabs, Priority.ALWAYS);
+        stage.setScene(new Scene(vbox, 900, 500));
+        stage.show();
+    }
+
+    // Name column, one column per ledger, then the total
+    private static void setConsolidatedColumns(TableView<LedgerWorkspace.ConsolidatedRow> table, String title,
+                                               List<String> ledgerNames) {
+        TableColumn<LedgerWorkspace.ConsolidatedRow, String> nameCol = new TableColumn<>(title);
+        nameCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().name()));
+        nameCol.setMinWidth(160);
+        table.getColumns().setAll(List.of(nameCol));
+        for (String ledger : ledgerNames) {
+            TableColumn<LedgerWorkspace.ConsolidatedRow, String> col = new TableColumn<>(ledger);
+            col.setCellValueFactory(c -> {
+                Double v = c.getValue().perLedger().get(ledger);
+                return new ReadOnlyStringWrapper(v == null ? "" : String.format("%.2f", v));
+            });
+            table.getColumns().add(col);
+        }
+        TableColumn<LedgerWorkspace.ConsolidatedRow, String> totalCol = new TableColumn<>("Total");
+        totalCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(
+                String.format("%.2f", c.getValue().total())));
+        table.getColumns().add(totalCol);
+    }
+
+    // -------------------------
+    // Cash-flow Forecast
+    // -------------------------
+    private void openForecastWindow() {
+        Stage stage = new Stage();
+        stage.setTitle("Cash-flow Forecast");
+
+        ComboBox<Wallet> cbWallet = new ComboBox<>(wallets);
+        cbWallet.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(Wallet w) { return (w == null) ? "" : w.getName(); }
+            @Override
+            public Wallet fromString(String s) { return null; }
+        });
+        Spinner<Integer> spMonths = new Spinner<>(1, 24, 12);
+        spMonths.setPrefWidth(70);
+        Spinner<Integer> spPaths = new Spinner<>(1_000, 500_000, 50_000, 10_000);
+        spPaths.setEditable(true);
+        spPaths.setPrefWidth(110);
+
+        NumberAxis xAxis = new NumberAxis();
+        xAxis.setLabel("Days ahead");
+        NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel("Balance");
+        yAxis.setForceZeroInRange(true);
+        LineChart<Number, Number> chart = new LineChart<>(xAxis, yAxis);
+        chart.setCreateSymbols(false);
+        chart.setAnimated(false);
+        Label lblSummary = new Label();
+
+        Button btnRun = new Button("Run");
+        btnRun.setOnAction(e -> {
+            Wallet wallet = cbWallet.getValue();
+            if (wallet == null) {
+                showAlert("Choose a wallet first.");
+                return;
+            }
+            String walletName = wallet.getName();
+            double initialBalance = wallet.getInitialBalance();
+            LocalDate today = LocalDate.now();
+            int days = CashFlowForecaster.horizonDays(today, spMonths.getValue());
+            int paths = spPaths.getValue();
+            Transaction[] snapshot = transactions.toArray(new Transaction[0]);
+            long started = System.nanoTime();
+            queries.submit("forecast", () -> new CashFlowForecaster(snapshot, today)
+                    .forecast(walletName, initialBalance, days, paths, System.nanoTime()), forecast -> {
+                chart.getData().clear();
+                for (int i = 0; i < CashFlowForecaster.PERCENTILES.length; i++) {
+                    XYChart.Series<Number, Number> series = new XYChart.Series<>();
+                    series.setName("P" + CashFlowForecaster.PERCENTILES[i]);
+                    for (int c = 0; c < forecast.checkpointDays().length; c++) {
+                        series.getData().add(new XYChart.Data<>(forecast.checkpointDays()[c], forecast.bands()[i][c]));
                     }
-                    t.setType((String) map.get("type"));
-                    t.setArticle((String) map.get("article"));
-                    t.setSubArticle((String) map.get("subArticle"));
-                    t.setWallet((String) map.get("wallet"));
-                    Number amt = (Number) map.get("amount");
-                    if (amt != null) t.setAmount(amt.doubleValue());
-                    t.setComment((String) map.get("comment"));
-                    transactions.add(t);
+                    chart.getData().add(series);
                 }
-            }
+                lblSummary.setText(String.format("Start balance: %.2f   Probability of going negative: %.1f%%   "
+                                + "(%d paths, %d days, %d ms)", forecast.startBalance(),
+                        forecast.probabilityNegative() * 100, forecast.paths(), days,
+                        (System.nanoTime() - started) / 1_000_000));
+            }, this::showQueryError);
+        });
+
+        HBox controls = new HBox(10, new Label("Wallet:"), cbWallet, new Label("Months:"), spMonths,
+                new Label("Paths:"), spPaths, btnRun);
+        VBox vbox = new VBox(10, controls, chart, lblSummary);
+        vbox.setPadding(new Insets(10));
+        VBox.setVgrow(chart, Priority.ALWAYS);
+        stage.setScene(new Scene(vbox, 900, 550));
+        stage.show();
+    }
+
+    // -------------------------
+    // Export
+    // -------------------------
+    private void exportCurrentView(Stage owner) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export Transactions");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                new FileChooser.ExtensionFilter("JSON", "*.json"),
+                new FileChooser.ExtensionFilter("Gzipped CSV", "*.csv.gz"),
+                new FileChooser.ExtensionFilter("Gzipped JSON", "*.json.gz"));
+        File file = chooser.showSaveDialog(owner);
+        if (file == null) return;
+
+        String name = file.getName();
+        TransactionExporter.Format format = TransactionExporter.Format.fromFileName(name);
+        boolean gzip = name.toLowerCase().endsWith(".gz");
+        if (currentFilter() == null) {
+            showAlert("Fix the filter expression first.");
+            return;
+        }
+        if (!(transactionsTable.getItems() instanceof PagedTransactionList view)) {
+            showAlert("The table is still loading; try again in a moment.");
+            return;
+        }
+        // Exports the rows the table shows, in its order. The view's source is an immutable
+        // index over the filter's snapshot, so the writer can page through it without copying.
+        Iterable<Transaction> rows = PagedTransactionList.rows(view.currentSource());
+
+        // Not a view query: a later export must not cancel this one halfway through the file
+        queries.run(() -> TransactionExporter.export(rows, t -> true, file.toPath(), format, gzip),
+                count -> showInfo("Exported " + count + " transactions to " + file.getName() + "."),
+                ex -> showAlert("Export of " + file.getName() + " failed: " + ex.getMessage()));
+    }
+
+    // -------------------------
+    // Data Persistence (JSON)
+    // -------------------------
+    private void loadData() {
+        try {
+            FileStamp stamp = FileStamp.of(new File(DATA_FILE_NAME));
+            LedgerData data = repository.loadAll();
+            articles.setAll(data.articles);
+            wallets.setAll(data.wallets);
+            transactions.setAll(data.transactions);
+            knownFileStamp = stamp;
+            rememberDirectoryBase(articles, wallets);
         } catch (IOException ex) {
             ex.printStackTrace();
         }
     }
 
-    private void saveData() {
-        File file = new File("andromeda8finance_data.json");
-        StringBuilder sb = new StringBuilder();
-        sb.append("{\n");
-
-        // articles
-        sb.append("  \"articles\": [\n");
-        for (int i = 0; i < articles.size(); i++) {
-            Article a = articles.get(i);
-            sb.append("    {\n");
-            sb.append("      \"name\": \"").append(escape(a.getName())).append("\",\n");
-            sb.append("      \"type\": \"").append(escape(a.getType())).append("\",\n");
-            sb.append("      \"subArticles\": [");
-            for (int j = 0; j < a.getSubArticles().size(); j++) {
-                sb.append("\"").append(escape(a.getSubArticles().get(j))).append("\"");
-                if (j < a.getSubArticles().size() - 1) {
-                    sb.append(", ");
+    // -------------------------
+    // Hot reload of external edits
+    // -------------------------
+    private void onDataFileChanged() {
+        if (Objects.equals(FileStamp.of(new File(DATA_FILE_NAME)), knownFileStamp)) {
+            return; // our own save
+        }
+        // Editors and sync tools often write in several steps; wait for them to finish
+        queries.debounce("reload", RELOAD_DEBOUNCE, () -> {
+            File file = new File(DATA_FILE_NAME);
+            queries.submit("reload", () -> {
+                FileStamp stamp = FileStamp.of(file);
+                return Map.entry(stamp, repository.loadAll());
+            }, loaded -> applyExternalChanges(loaded.getValue(), loaded.getKey()), this::showQueryError);
+        });
+    }
+
+    /**
+     * Reads and merges the data file now if it changed since our last load or save,
+     * so a save never overwrites edits made outside the app.
+     */
+    private void mergeExternalChangesNow() {
+        if (!(repository instanceof JsonLedgerRepository)) return;
+        File file = new File(DATA_FILE_NAME);
+        FileStamp stamp = FileStamp.of(file);
+        if (stamp == null || stamp.equals(knownFileStamp)) return;
+        try {
+            applyExternalChanges(repository.loadAll(), stamp);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Three-way merge of the file into memory, against the state of the last load or
+     * save: transactions through {@link TransactionMerge}, articles and wallets by
+     * name with the same rules. Changes made only in the file are applied as
+     * fine-grained list changes; unchanged rows keep their in-memory instances.
+     */
+    private void applyExternalChanges(LedgerData disk, FileStamp stamp) {
+        if (stamp != null && stamp.equals(knownFileStamp)) return;
+        if (!Objects.equals(FileStamp.of(new File(DATA_FILE_NAME)), stamp)) {
+            return; // the file changed again while it was read (or we saved meanwhile); a newer read follows
+        }
+        knownFileStamp = stamp;
+        TransactionMerge merge = TransactionMerge.of(transactions, transactionIndex, transactionsInEditor,
+                disk.transactions);
+        List<String> conflicts = new ArrayList<>(merge.conflicts());
+
+        merge.applyChanges(transactionIndex);
+        List<Transaction> added = merge.added();
+        if (!added.isEmpty()) {
+            Map<Transaction, Transaction> flagged = duplicates.findDuplicates(added);
+            transactions.addAll(added);
+            if (!flagged.isEmpty()) {
+                conflicts.add(flagged.size() + " of the " + added.size() + " transactions added in the file look like"
+                        + " duplicates, e.g. " + describe(flagged.keySet().iterator().next()) + ".");
+            }
+        }
+
+        // Articles and wallets: matched by name
+        mergeByName(articles, baseArticles, disk.articles, Article::getName, (mem, file) -> {
+            mem.setType(file.getType());
+            mem.setSubArticles(file.getSubArticles());
+        }, (a, b) -> Objects.equals(a.getType(), b.getType()) && a.getSubArticles().equals(b.getSubArticles()),
+                "Article", conflicts);
+        mergeByName(wallets, baseWallets, disk.wallets, Wallet::getName,
+                (mem, file) -> mem.setInitialBalance(file.getInitialBalance()),
+                (a, b) -> a.getInitialBalance() == b.getInitialBalance(), "Wallet", conflicts);
+        rememberDirectoryBase(disk.articles, disk.wallets);
+
+        if (!merge.isEmpty()) {
+            updateFilteredTransactions();
+        }
+        if (!conflicts.isEmpty()) {
+            showAlert(String.join("\n", conflicts));
+        }
+    }
+
+    /**
+     * Three-way merge of a list keyed by name, with the same rules as for transactions.
+     */
+    private static <T> void mergeByName(ObservableList<T> memory, List<T> base, List<T> disk,
+                                        Function<T, String> name, BiConsumer<T, T> update, BiPredicate<T, T> same,
+                                        String kind, List<String> conflicts) {
+        Map<String, T> baseByName = new HashMap<>();
+        for (T item : base) baseByName.put(name.apply(item), item);
+        Map<String, T> fromDisk = new LinkedHashMap<>();
+        for (T item : disk) fromDisk.put(name.apply(item), item);
+
+        List<T> removed = new ArrayList<>();
+        for (T item : memory) {
+            String key = name.apply(item);
+            T original = baseByName.get(key);
+            T onDisk = fromDisk.remove(key);
+            boolean localChange = original == null || !same.test(item, original);
+            if (onDisk == null) {
+                if (original == null) continue; // added here
+                if (localChange) {
+                    conflicts.add(kind + " '" + key + "' was changed here but removed in the file; keeping it.");
+                } else {
+                    removed.add(item);
+                }
+            } else if (!same.test(item, onDisk)) {
+                if (!localChange) {
+                    update.accept(item, onDisk);
+                    // Replace in place so list views notice the change
+                    memory.set(memory.indexOf(item), item);
+                } else if (original == null || !same.test(onDisk, original)) {
+                    conflicts.add(kind + " '" + key + "' was changed both here and in the file;"
+                            + " keeping this app's version.");
                 }
             }
-            sb.append("]\n");
-            sb.append("    }");
-            if (i < articles.size() - 1) sb.append(",");
-            sb.append("\n");
-        }
-        sb.append("  ],\n");
-
-        // wallets
-        sb.append("  \"wallets\": [\n");
-        for (int i = 0; i < wallets.size(); i++) {
-            Wallet w = wallets.get(i);
-            sb.append("    {\n");
-            sb.append("      \"name\": \"").append(escape(w.getName())).append("\",\n");
-            sb.append("      \"initialBalance\": ").append(w.getInitialBalance()).append("\n");
-            sb.append("    }");
-            if (i < wallets.size() - 1) sb.append(",");
-            sb.append("\n");
-        }
-        sb.append("  ],\n");
-
-        // transactions
-        sb.append("  \"transactions\": [\n");
-        for (int i = 0; i < transactions.size(); i++) {
-            Transaction t = transactions.get(i);
-            sb.append("    {\n");
-            sb.append("      \"date\": \"").append(t.getDate() == null ? "" : t.getDate().toString()).append("\",\n");
-            sb.append("      \"type\": \"").append(escape(t.getType())).append("\",\n");
-            sb.append("      \"article\": \"").append(escape(t.getArticle())).append("\",\n");
-            sb.append("      \"subArticle\": \"").append(escape(t.getSubArticle())).append("\",\n");
-            sb.append("      \"wallet\": \"").append(escape(t.getWallet())).append("\",\n");
-            sb.append("      \"amount\": ").append(t.getAmount()).append(",\n");
-            sb.append("      \"comment\": \"").append(escape(t.getComment())).append("\"\n");
-            sb.append("    }");
-            if (i < transactions.size() - 1) sb.append(",");
-            sb.append("\n");
-        }
-        sb.append("  ]\n");
-        sb.append("}\n");
-
-        try (FileWriter writer = new FileWriter(file)) {
-            writer.write(sb.toString());
+        }
+        memory.removeAll(removed);
+        // What is left on disk is new there, or was deleted here
+        for (T onDisk : fromDisk.values()) {
+            T original = baseByName.get(name.apply(onDisk));
+            if (original == null) {
+                memory.add(onDisk);
+            } else if (!same.test(onDisk, original)) {
+                conflicts.add(kind + " '" + name.apply(onDisk) + "' was deleted here but changed in the file;"
+                        + " it stays deleted.");
+            }
+        }
+    }
+
+    // Copies, so later in-place edits of the live objects do not change the base
+    private void rememberDirectoryBase(List<Article> articleList, List<Wallet> walletList) {
+        List<Article> articleCopies = new ArrayList<>(articleList.size());
+        for (Article a : articleList) {
+            Article copy = new Article(a.getName(), a.getType());
+            copy.setSubArticles(new ArrayList<>(a.getSubArticles()));
+            articleCopies.add(copy);
+        }
+        List<Wallet> walletCopies = new ArrayList<>(walletList.size());
+        for (Wallet w : walletList) walletCopies.add(cloneWallet(w));
+        baseArticles = articleCopies;
+        baseWallets = walletCopies;
+    }
+
+    private void saveData() {
+        mergeExternalChangesNow();
+        try {
+            Collection<Transaction> upserts = transactionIndex.pendingUpserts();
+            Collection<Long> deletes = transactionIndex.pendingDeletes();
+            repository.saveChanges(articles, wallets, transactions, upserts, deletes);
+            transactionIndex.clearPending(upserts, deletes);
+            rememberDirectoryBase(articles, wallets);
         } catch (IOException e) {
             e.printStackTrace();
         }
+        if (repository instanceof JsonLedgerRepository json) {
+            knownFileStamp = FileStamp.of(json.file().toFile());
+        }
     }
 
     // -------------------------
     // Utility & Helpers
     // -------------------------
-    private static String escape(String s) {
-        if (s == null) return "";
-        return s.replace("\"", "\\\"");
-    }
-
     private Wallet cloneWallet(Wallet w) {
         Wallet clone = new Wallet();
         clone.setName(w.getName());
@@ -771,6 +1418,7 @@ public class Andromeda8FinanceApp extends Application {
 
     private Transaction cloneTransaction(Transaction t) {
         Transaction clone = new Transaction();
+        clone.setId(t.getId());
         clone.setDate(t.getDate());
         clone.setType(t.getType());
         clone.setArticle(t.getArticle());
@@ -778,9 +1426,15 @@ public class Andromeda8FinanceApp extends Application {
         clone.setWallet(t.getWallet());
         clone.setAmount(t.getAmount());
         clone.setComment(t.getComment());
+        clone.setReconciled(t.isReconciled());
         return clone;
     }
 
+    static String describe(Transaction t) {
+        return t.getDate() + " / " + t.getWallet() + " / " + t.getAmount() + " / \""
+                + (t.getComment() == null ? "" : t.getComment()) + "\"";
+    }
+
     private Article findArticleByName(String name) {
         for (Article a : articles) {
             if (Objects.equals(a.getName(), name)) {
@@ -799,6 +1453,23 @@ public class Andromeda8FinanceApp extends Application {
         return null;
     }
 
+    private void showDiagnostics() {
+        String msg = "Transactions: " + transactions.size() + "\n"
+                + "Dictionary entries: " + dictionary.size() + "\n"
+                + "Dictionary lookups (since start): " + dictionary.lookups() + "\n"
+                + "Estimated bytes saved: " + dictionary.bytesSaved(transactions) + "\n"
+                + "Duplicate index entries: " + duplicates.size() + "\n"
+                + "FX stalls logged: " + (watchdog == null ? "watchdog off" : watchdog.stallCount());
+        Alert alert = new Alert(Alert.AlertType.INFORMATION, msg, ButtonType.OK);
+        alert.setHeaderText("Diagnostics");
+        alert.showAndWait();
+    }
+
+    private void showInfo(String msg) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION, msg, ButtonType.OK);
+        alert.showAndWait();
+    }
+
     private void showAlert(String msg) {
         Alert alert = new Alert(Alert.AlertType.ERROR, msg, ButtonType.OK);
         alert.showAndWait();
@@ -820,6 +1491,41 @@ public class Andromeda8FinanceApp extends Application {
         };
     }
 
+    /**
+     * Articles, wallets and transactions read from storage, not yet attached to the UI lists.
+     */
+    static class LedgerData {
+        final List<Article> articles = new ArrayList<>();
+        final List<Wallet> wallets = new ArrayList<>();
+        final List<Transaction> transactions = new ArrayList<>();
+    }
+
+    /**
+     * Last-modified time and size of a file, used to tell our own writes from external ones.
+     */
+    record FileStamp(long lastModified, long size) {
+        static FileStamp of(File file) {
+            return file.exists() ? new FileStamp(file.lastModified(), file.length()) : null;
+        }
+    }
+
+    /**
+     * Full content of a transaction apart from its id, used to detect rows edited outside the app.
+     * Nulls are keyed as "" because that is how saveData writes them.
+     */
+    record TransactionKey(LocalDate date, String type, String article, String subArticle,
+                          String wallet, double amount, String comment, boolean reconciled) {
+        static TransactionKey of(Transaction t) {
+            return new TransactionKey(t.getDate(), nullToEmpty(t.getType()), nullToEmpty(t.getArticle()),
+                    nullToEmpty(t.getSubArticle()), nullToEmpty(t.getWallet()), t.getAmount(),
+                    nullToEmpty(t.getComment()), t.isReconciled());
+        }
+
+        private static String nullToEmpty(String s) {
+            return s == null ? "" : s;
+        }
+    }
+
     // A small helper for building forms
     static class GridPaneEx extends GridPane {
         private int row = 0;
@@ -834,6 +1540,57 @@ public class Andromeda8FinanceApp extends Application {
         }
     }
 
+    /**
+     * Canonicalizing dictionary for the small set of strings that repeat across
+     * every transaction (type, article, sub-article, wallet). Each distinct value
+     * is stored once, so equal values share one instance and compare by identity.
+     */
+    static class StringDictionary {
+        // Rough cost of a String beyond its characters: object header + fields + byte[] header
+        private static final int STRING_OVERHEAD_BYTES = 40;
+
+        private final Map<String, String> canonical = new ConcurrentHashMap<>();
+        private final AtomicLong lookups = new AtomicLong();
+
+        /**
+         * Returns the canonical instance equal to {@code s}, registering it on first sight.
+         */
+        public String intern(String s) {
+            if (s == null) return null;
+            lookups.incrementAndGet();
+            String existing = canonical.putIfAbsent(s, s);
+            return existing == null ? s : existing;
+        }
+
+        /**
+         * Returns the canonical instance if present, without registering a new value.
+         */
+        public String lookup(String s) {
+            return s == null ? null : canonical.get(s);
+        }
+
+        public int size() { return canonical.size(); }
+        public long lookups() { return lookups.get(); }
+
+        /**
+         * Estimates the memory that sharing saves on {@code rows} right now: every
+         * reference to a value beyond the first would otherwise be its own String.
+         */
+        public long bytesSaved(Collection<Transaction> rows) {
+            long saved = 0;
+            Set<String> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Transaction t : rows) {
+                saved += sharedBytes(t.getType(), distinct) + sharedBytes(t.getArticle(), distinct)
+                        + sharedBytes(t.getSubArticle(), distinct) + sharedBytes(t.getWallet(), distinct);
+            }
+            return saved;
+        }
+
+        private static long sharedBytes(String s, Set<String> distinct) {
+            return s == null || distinct.add(s) ? 0 : STRING_OVERHEAD_BYTES + s.length();
+        }
+    }
+
     // Minimal JSON Parser used in loadData
     static class SimpleJsonParser {
         public static Map<String, List<Map<String, Object>>> parseRoot(String json) {
@@ -922,12 +1679,16 @@ public class Andromeda8FinanceApp extends Application {
                     }
                     map.put(key, realItems);
                 } else {
-                    // attempt numeric
+                    // attempt numeric; integers stay exact as long (ids need all 64 bits)
                     try {
-                        double d = Double.parseDouble(val);
-                        map.put(key, d);
-                    } catch (NumberFormatException e) {
-                        map.put(key, val);
+                        map.put(key, Long.parseLong(val));
+                    } catch (NumberFormatException notLong) {
+                        try {
+                            double d = Double.parseDouble(val);
+                            map.put(key, d);
+                        } catch (NumberFormatException e) {
+                            map.put(key, val);
+                        }
                     }
                 }
             }
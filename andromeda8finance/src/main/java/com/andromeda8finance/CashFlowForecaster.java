@@ -0,0 +1,336 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.stream.IntStream;
+
+/**
+ * Monte Carlo projection of a wallet's balance.
+ *
+ * The history is fitted per article and month of year: how many transactions a
+ * day (a Poisson rate) and how large they are (a log-normal). Articles always
+ * booked on the same day of the month, like salary or rent, are recurring instead:
+ * they happen on that day with the observed probability. Each simulated path then
+ * draws every day's transactions from the fit for that day's month, starting from
+ * the wallet's current balance. Paths run in parallel in fixed-size chunks,
+ * each with its own stream split from one seeded generator, so a given seed always
+ * gives the same forecast regardless of thread scheduling.
+ *
+ * Balances are not kept per path: each checkpoint has a fixed-size histogram whose
+ * range is set from the first chunk, and percentiles are read from it to within
+ * one bin. Memory therefore does not grow with the number of paths.
+ */
+class CashFlowForecaster {
+
+    static final int[] PERCENTILES = {5, 25, 50, 75, 95};
+
+    private static final int CHUNK_PATHS = 1024;
+    private static final int BINS = 1024;
+    private static final int CHECKPOINT_DAYS = 7;
+    private static final int MIN_MONTH_SAMPLES = 3;
+
+    /**
+     * Projected balances at weekly checkpoints and on the last day of the horizon:
+     * {@code bands[i][c]} is percentile {@code PERCENTILES[i]} at day
+     * {@code checkpointDays[c]}.
+     */
+    record Forecast(String wallet, LocalDate start, int paths, double startBalance,
+                    int[] checkpointDays, double[][] bands, double probabilityNegative) {}
+
+    /**
+     * The fitted model of one wallet, flattened into arrays indexed by
+     * {@code stream * 12 + month} so the simulation loop touches no objects.
+     */
+    private static final class Model {
+        int streams;
+        double[] sign;          // per stream: +1 income, -1 expense
+        int[] recurringDay;     // per stream: day of month of a recurring article, or 0
+        double[] expNegRate;    // e^-lambda, for Poisson sampling
+        double[] rate;
+        double[] mu;            // log-normal parameters of the amount
+        double[] sigma;
+    }
+
+    private final Transaction[] history;
+    private final LocalDate start;
+
+    /**
+     * @param history all transactions; only rows dated before {@code start} are used
+     * @param start   the first projected day
+     */
+    CashFlowForecaster(Transaction[] history, LocalDate start) {
+        this.history = history;
+        this.start = start;
+    }
+
+    Forecast forecast(String wallet, double initialBalance, int days, int paths, long seed) {
+        double balance = initialBalance;
+        for (Transaction t : history) {
+            if (Objects.equals(t.getWallet(), wallet) && t.getDate() != null && t.getDate().isBefore(start)) {
+                balance += Andromeda8FinanceApp.signedAmount(t);
+            }
+        }
+        Model model = fit(wallet);
+
+        int[] monthOfDay = new int[days];
+        int[] dayOfMonth = new int[days];
+        for (int d = 0; d < days; d++) {
+            LocalDate date = start.plusDays(d);
+            monthOfDay[d] = date.getMonthValue() - 1;
+            dayOfMonth[d] = date.getDayOfMonth();
+        }
+        // Every week from day 0, plus the last day when the horizon is not whole weeks
+        int[] checkpointDays = new int[days / CHECKPOINT_DAYS + (days % CHECKPOINT_DAYS == 0 ? 1 : 2)];
+        for (int c = 0; c < checkpointDays.length; c++) {
+            checkpointDays[c] = Math.min(c * CHECKPOINT_DAYS, days);
+        }
+
+        // Chunk streams are split up front so each chunk's draws depend only on the seed
+        int chunks = (paths + CHUNK_PATHS - 1) / CHUNK_PATHS;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++) {
+            randoms[c] = root.split();
+        }
+
+        int checkpointCount = checkpointDays.length;
+        int[] negativeByChunk = new int[chunks];
+        double startBalance = balance;
+        QueryExecutor.Cancellation cancellation = QueryExecutor.current();
+
+        // The first chunk runs alone and sets each checkpoint's histogram range: its
+        // spread, padded by the same width on either side. Values beyond are clamped.
+        int pilotPaths = Math.min(paths, CHUNK_PATHS);
+        double[] pilot = new double[pilotPaths * checkpointCount];
+        negativeByChunk[0] = simulate(model, startBalance, days, monthOfDay, dayOfMonth, checkpointDays,
+                randoms[0], pilotPaths, (p, c, b) -> pilot[p * checkpointCount + c] = b);
+        double[] low = new double[checkpointCount];
+        double[] binWidth = new double[checkpointCount];
+        for (int c = 0; c < checkpointCount; c++) {
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int p = 0; p < pilotPaths; p++) {
+                min = Math.min(min, pilot[p * checkpointCount + c]);
+                max = Math.max(max, pilot[p * checkpointCount + c]);
+            }
+            double spread = Math.max(max - min, 1);
+            low[c] = min - spread;
+            binWidth[c] = 3 * spread / BINS;
+        }
+
+        // histogram[c * BINS + bin]: paths whose balance at checkpoint c fell in the bin
+        long[] histogram = new long[checkpointCount * BINS];
+        for (int p = 0; p < pilotPaths; p++) {
+            for (int c = 0; c < checkpointCount; c++) {
+                histogram[c * BINS + bin(pilot[p * checkpointCount + c], low[c], binWidth[c])]++;
+            }
+        }
+
+        IntStream.range(1, chunks).parallel().forEach(chunk -> {
+            if (cancellation.isCancelled()) throw new CancellationException();
+            int chunkPaths = Math.min(paths, (chunk + 1) * CHUNK_PATHS) - chunk * CHUNK_PATHS;
+            int[] counts = new int[checkpointCount * BINS];
+            negativeByChunk[chunk] = simulate(model, startBalance, days, monthOfDay, dayOfMonth, checkpointDays,
+                    randoms[chunk], chunkPaths, (p, c, b) -> counts[c * BINS + bin(b, low[c], binWidth[c])]++);
+            synchronized (histogram) {
+                for (int i = 0; i < counts.length; i++) histogram[i] += counts[i];
+            }
+        });
+        QueryExecutor.checkCancelled();
+
+        double[][] bands = new double[PERCENTILES.length][checkpointCount];
+        for (int c = 0; c < checkpointCount; c++) {
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                long rank = Math.min(paths - 1, (long) PERCENTILES[i] * paths / 100);
+                bands[i][c] = percentile(histogram, c * BINS, rank, low[c], binWidth[c]);
+            }
+        }
+
+        int negative = 0;
+        for (int n : negativeByChunk) negative += n;
+        return new Forecast(wallet, start, paths, startBalance, checkpointDays, bands, (double) negative / paths);
+    }
+
+    private interface CheckpointSink {
+        void accept(int path, int checkpoint, double balance);
+    }
+
+    // Simulates paths 0..count-1 of one chunk, reporting balances at each checkpoint;
+    // returns how many of them went negative at some point
+    private static int simulate(Model model, double startBalance, int days, int[] monthOfDay, int[] dayOfMonth,
+                                int[] checkpointDays, SplittableRandom random, int count, CheckpointSink sink) {
+        int negative = 0;
+        for (int p = 0; p < count; p++) {
+            double b = startBalance;
+            boolean wentNegative = b < 0;
+            sink.accept(p, 0, b);
+            int nextCheckpoint = 1;
+            for (int d = 0; d < days; d++) {
+                b += simulateDay(model, monthOfDay[d], dayOfMonth[d], random);
+                if (b < 0) wentNegative = true;
+                if (nextCheckpoint < checkpointDays.length && d + 1 == checkpointDays[nextCheckpoint]) {
+                    sink.accept(p, nextCheckpoint, b);
+                    nextCheckpoint++;
+                }
+            }
+            if (wentNegative) negative++;
+        }
+        return negative;
+    }
+
+    private static int bin(double value, double low, double width) {
+        return (int) Math.max(0, Math.min(BINS - 1, (value - low) / width));
+    }
+
+    // The value of the given 0-based rank, interpolated within its bin
+    private static double percentile(long[] histogram, int offset, long rank, double low, double width) {
+        long below = 0;
+        for (int bin = 0; bin < BINS; bin++) {
+            long count = histogram[offset + bin];
+            if (below + count > rank) {
+                return low + width * (bin + (rank - below + 0.5) / count);
+            }
+            below += count;
+        }
+        return low + width * BINS;
+    }
+
+    // Net cash flow of one simulated day
+    private static double simulateDay(Model m, int month, int dayOfMonth, SplittableRandom random) {
+        double net = 0;
+        for (int s = 0; s < m.streams; s++) {
+            int i = s * 12 + month;
+            double rate = m.rate[i];
+            if (rate == 0) continue;
+            int events;
+            if (m.recurringDay[s] != 0) {
+                events = m.recurringDay[s] == dayOfMonth && random.nextDouble() < rate ? 1 : 0;
+            } else {
+                events = poisson(rate, m.expNegRate[i], random);
+            }
+            for (int e = 0; e < events; e++) {
+                net += m.sign[s] * Math.exp(m.mu[i] + m.sigma[i] * random.nextGaussian());
+            }
+        }
+        return net;
+    }
+
+    private static int poisson(double rate, double expNegRate, SplittableRandom random) {
+        if (rate > 30) {
+            // Normal approximation; the product method needs too many draws at high rates
+            return Math.max(0, (int) Math.round(rate + Math.sqrt(rate) * random.nextGaussian()));
+        }
+        int k = 0;
+        double p = random.nextDouble();
+        while (p > expNegRate) {
+            k++;
+            p *= random.nextDouble();
+        }
+        return k;
+    }
+
+    /**
+     * Fits one stream per article seen on the wallet. The rate for a month is the
+     * number of its transactions in that month of year divided by the number of
+     * days of that month covered by the history. Amount parameters come from the
+     * month's transactions, or from all of the article's transactions when the
+     * month has too few. For a recurring article the rate is instead the share of
+     * that month's occurrences in the history in which it was booked.
+     */
+    private Model fit(String wallet) {
+        LocalDate first = null;
+        LocalDate last = null;
+        Map<String, List<Transaction>> byArticle = new LinkedHashMap<>();
+        for (Transaction t : history) {
+            if (t.getDate() == null || !t.getDate().isBefore(start)) continue;
+            if (first == null || t.getDate().isBefore(first)) first = t.getDate();
+            if (last == null || t.getDate().isAfter(last)) last = t.getDate();
+            if (Objects.equals(t.getWallet(), wallet) && t.getAmount() > 0) {
+                byArticle.computeIfAbsent(t.getType() + "/" + t.getArticle(), k -> new ArrayList<>()).add(t);
+            }
+        }
+
+        int[] daysObserved = new int[12];
+        int[] monthsObserved = new int[12];
+        if (first != null) {
+            for (LocalDate d = first; !d.isAfter(last); d = d.plusDays(1)) {
+                daysObserved[d.getMonthValue() - 1]++;
+                if (d.getDayOfMonth() == 1 || d.equals(first)) monthsObserved[d.getMonthValue() - 1]++;
+            }
+        }
+
+        Model m = new Model();
+        m.streams = byArticle.size();
+        m.sign = new double[m.streams];
+        m.recurringDay = new int[m.streams];
+        m.rate = new double[m.streams * 12];
+        m.expNegRate = new double[m.streams * 12];
+        m.mu = new double[m.streams * 12];
+        m.sigma = new double[m.streams * 12];
+
+        int s = 0;
+        for (List<Transaction> rows : byArticle.values()) {
+            m.sign[s] = "Expense".equals(rows.get(0).getType()) ? -1 : 1;
+            m.recurringDay[s] = recurringDay(rows);
+            double[] all = logNormal(rows, -1);
+            for (int month = 0; month < 12; month++) {
+                int i = s * 12 + month;
+                int count = 0;
+                for (Transaction t : rows) {
+                    if (t.getDate().getMonthValue() - 1 == month) count++;
+                }
+                if (m.recurringDay[s] != 0) {
+                    m.rate[i] = monthsObserved[month] == 0 ? 0 : Math.min(1, (double) count / monthsObserved[month]);
+                } else {
+                    m.rate[i] = daysObserved[month] == 0 ? 0 : (double) count / daysObserved[month];
+                }
+                m.expNegRate[i] = Math.exp(-m.rate[i]);
+                double[] params = count >= MIN_MONTH_SAMPLES ? logNormal(rows, month) : all;
+                m.mu[i] = params[0];
+                m.sigma[i] = params[1];
+            }
+            s++;
+        }
+        return m;
+    }
+
+    // The shared day of month if every row (at least three, at most one a month) falls on it, else 0
+    private static int recurringDay(List<Transaction> rows) {
+        if (rows.size() < MIN_MONTH_SAMPLES) return 0;
+        int day = rows.get(0).getDate().getDayOfMonth();
+        Set<Integer> months = new HashSet<>();
+        for (Transaction t : rows) {
+            LocalDate d = t.getDate();
+            if (d.getDayOfMonth() != day || !months.add(d.getYear() * 12 + d.getMonthValue())) return 0;
+        }
+        return day;
+    }
+
+    // {mu, sigma} of ln(amount) over the rows in the given month (0-11), or all rows if month is -1
+    private static double[] logNormal(List<Transaction> rows, int month) {
+        double sum = 0;
+        double sumSq = 0;
+        int n = 0;
+        for (Transaction t : rows) {
+            if (month >= 0 && t.getDate().getMonthValue() - 1 != month) continue;
+            double x = Math.log(t.getAmount());
+            sum += x;
+            sumSq += x * x;
+            n++;
+        }
+        if (n == 0) return new double[] {0, 0};
+        double mu = sum / n;
+        double variance = n > 1 ? Math.max(0, (sumSq - n * mu * mu) / (n - 1)) : 0;
+        return new double[] {mu, Math.sqrt(variance)};
+    }
+
+    /**
+     * Number of days from {@code start} through the same day {@code months} later.
+     */
+    static int horizonDays(LocalDate start, int months) {
+        return (int) ChronoUnit.DAYS.between(start, start.plusMonths(months));
+    }
+}
@@ -0,0 +1,173 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.*;
+
+/**
+ * Fingerprint index over (date, amount, wallet, normalized comment) used to flag
+ * probable duplicate transactions.
+ *
+ * Fuzziness is configurable with a +/- day window and an absolute amount tolerance.
+ * A check probes a fixed number of hash buckets (window days x 3 amount buckets),
+ * so its cost does not depend on the size of the ledger.
+ */
+class DuplicateIndex {
+
+    private record Key(String wallet, String comment, long epochDay, long amountBucket) {}
+
+    private final int windowDays;
+    private final double amountTolerance;
+    private final double bucketWidth;
+
+    private final Map<Key, List<Transaction>> buckets = new HashMap<>();
+    // Key each transaction was indexed under, so in-place edits can be re-indexed
+    private final Map<Transaction, Key> indexedKeys = new IdentityHashMap<>();
+
+    DuplicateIndex(int windowDays, double amountTolerance) {
+        this.windowDays = Math.max(0, windowDays);
+        this.amountTolerance = Math.max(0, amountTolerance);
+        // Cent-wide buckets when matching exactly; otherwise as wide as the tolerance
+        this.bucketWidth = Math.max(0.01, this.amountTolerance);
+    }
+
+    /**
+     * Creates an index configured from the {@code andromeda8finance.duplicates.days}
+     * and {@code andromeda8finance.duplicates.amountTolerance} system properties.
+     */
+    static DuplicateIndex fromSystemProperties() {
+        int days = Integer.getInteger("andromeda8finance.duplicates.days", 1);
+        double tolerance = 0;
+        String tol = System.getProperty("andromeda8finance.duplicates.amountTolerance");
+        if (tol != null) {
+            try {
+                tolerance = Double.parseDouble(tol);
+            } catch (NumberFormatException ignored) {
+                // keep exact matching
+            }
+        }
+        return new DuplicateIndex(days, tolerance);
+    }
+
+    /**
+     * Keeps the index in sync with additions and removals on the given list.
+     */
+    void bind(ObservableList<Transaction> list) {
+        rebuild(list);
+        list.addListener((ListChangeListener<Transaction>) c -> {
+            while (c.next()) {
+                if (c.wasPermutated()) continue;
+                for (Transaction t : c.getRemoved()) remove(t);
+                for (Transaction t : c.getAddedSubList()) add(t);
+            }
+        });
+    }
+
+    void rebuild(Collection<Transaction> all) {
+        buckets.clear();
+        indexedKeys.clear();
+        for (Transaction t : all) add(t);
+    }
+
+    /**
+     * Indexes {@code t}, replacing its previous entry if it was already indexed.
+     */
+    void add(Transaction t) {
+        remove(t);
+        Key key = keyOf(t);
+        if (key == null) return;
+        indexedKeys.put(t, key);
+        buckets.computeIfAbsent(key, k -> new ArrayList<>(1)).add(t);
+    }
+
+    void remove(Transaction t) {
+        Key key = indexedKeys.remove(t);
+        if (key == null) return;
+        List<Transaction> list = buckets.get(key);
+        if (list == null) return;
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == t) {
+                list.remove(i);
+                break;
+            }
+        }
+        if (list.isEmpty()) buckets.remove(key);
+    }
+
+    /**
+     * Returns the first indexed transaction that looks like a duplicate of
+     * {@code candidate}, ignoring {@code self} (the row being edited), or null.
+     */
+    Transaction findDuplicate(Transaction candidate, Transaction self) {
+        Key key = keyOf(candidate);
+        if (key == null) return null;
+        return probe(buckets, key, candidate, self);
+    }
+
+    /**
+     * Checks a batch of new rows against the index and against each other.
+     * Returns each flagged row mapped to the row it duplicates.
+     */
+    Map<Transaction, Transaction> findDuplicates(List<Transaction> batch) {
+        Map<Transaction, Transaction> flagged = new IdentityHashMap<>();
+        Map<Key, List<Transaction>> seen = new HashMap<>();
+        for (Transaction t : batch) {
+            Key key = keyOf(t);
+            if (key == null) continue;
+            Transaction match = probe(buckets, key, t, null);
+            if (match == null) match = probe(seen, key, t, null);
+            if (match != null) flagged.put(t, match);
+            seen.computeIfAbsent(key, k -> new ArrayList<>(1)).add(t);
+        }
+        return flagged;
+    }
+
+    int size() {
+        return indexedKeys.size();
+    }
+
+    private Transaction probe(Map<Key, List<Transaction>> map, Key key, Transaction candidate, Transaction self) {
+        for (long day = key.epochDay() - windowDays; day <= key.epochDay() + windowDays; day++) {
+            for (long bucket = key.amountBucket() - 1; bucket <= key.amountBucket() + 1; bucket++) {
+                List<Transaction> list = map.get(new Key(key.wallet(), key.comment(), day, bucket));
+                if (list == null) continue;
+                for (Transaction other : list) {
+                    if (other == self) continue;
+                    if (Math.abs(other.getAmount() - candidate.getAmount()) <= amountTolerance + 0.005) {
+                        return other;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private Key keyOf(Transaction t) {
+        if (t.getDate() == null) return null;
+        return new Key(t.getWallet(), normalizeComment(t.getComment()),
+                t.getDate().toEpochDay(), (long) Math.floor(t.getAmount() / bucketWidth));
+    }
+
+    /**
+     * Lower-cases and strips punctuation and repeated whitespace so that
+     * "Uber  ride!" and "uber ride" fingerprint the same.
+     */
+    static String normalizeComment(String comment) {
+        if (comment == null) return "";
+        StringBuilder sb = new StringBuilder(comment.length());
+        boolean space = false;
+        for (int i = 0; i < comment.length(); i++) {
+            char c = comment.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && sb.length() > 0) sb.append(' ');
+                sb.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,411 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.StringDictionary;
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Compiles filter expressions such as
+ * {@code article == "Food" && amount > 100 && comment ~ "uber"} into predicates.
+ *
+ * Fields: date, type, article, subArticle, wallet, comment, amount, id, reconciled.
+ * Operators: {@code || && ! == != < <= > >= ~} (contains, ignoring case) and
+ * parentheses. Strings are double-quoted; dates are written as 2024-01-31.
+ *
+ * An expression is parsed once into a tree of small predicate nodes, one per
+ * comparison, with the operator and literal bound at compile time. Constant parts
+ * are folded away (an article name the dictionary has never seen cannot match) and
+ * the operands of {@code &&} and {@code ||} are ordered cheapest first, so the
+ * expensive substring tests run only on rows that survive the cheap ones.
+ */
+final class FilterExpression {
+
+    private FilterExpression() {}
+
+    /**
+     * Compiles {@code source}; a blank source accepts every row.
+     *
+     * @throws IllegalArgumentException with the position of the problem if the source is not valid
+     */
+    static Predicate<Transaction> compile(String source, StringDictionary dictionary) {
+        if (source == null || source.isBlank()) {
+            return Node.TRUE;
+        }
+        Parser parser = new Parser(tokenize(source), dictionary);
+        Node node = parser.parseOr();
+        parser.expect(Kind.END, "end of expression");
+        return node;
+    }
+
+    // -------------------------
+    // Predicate tree
+    // -------------------------
+    private abstract static class Node implements Predicate<Transaction> {
+        static final Node TRUE = new Const(true);
+        static final Node FALSE = new Const(false);
+
+        /** Relative evaluation cost, used to order operands. */
+        abstract int cost();
+    }
+
+    private static final class Const extends Node {
+        final boolean value;
+
+        Const(boolean value) { this.value = value; }
+
+        @Override public boolean test(Transaction t) { return value; }
+        @Override int cost() { return 0; }
+    }
+
+    private static final class Leaf extends Node {
+        final Predicate<Transaction> test;
+        final int cost;
+
+        Leaf(Predicate<Transaction> test, int cost) {
+            this.test = test;
+            this.cost = cost;
+        }
+
+        @Override public boolean test(Transaction t) { return test.test(t); }
+        @Override int cost() { return cost; }
+    }
+
+    private static final class Not extends Node {
+        final Node operand;
+
+        Not(Node operand) { this.operand = operand; }
+
+        @Override public boolean test(Transaction t) { return !operand.test(t); }
+        @Override int cost() { return operand.cost(); }
+    }
+
+    private static final class And extends Node {
+        final Node[] operands;
+
+        And(Node[] operands) { this.operands = operands; }
+
+        @Override
+        public boolean test(Transaction t) {
+            for (Node n : operands) {
+                if (!n.test(t)) return false;
+            }
+            return true;
+        }
+
+        @Override int cost() { return Arrays.stream(operands).mapToInt(Node::cost).sum(); }
+    }
+
+    private static final class Or extends Node {
+        final Node[] operands;
+
+        Or(Node[] operands) { this.operands = operands; }
+
+        @Override
+        public boolean test(Transaction t) {
+            for (Node n : operands) {
+                if (n.test(t)) return true;
+            }
+            return false;
+        }
+
+        @Override int cost() { return Arrays.stream(operands).mapToInt(Node::cost).sum(); }
+    }
+
+    private static Node not(Node n) {
+        if (n instanceof Const c) return c.value ? Node.FALSE : Node.TRUE;
+        if (n instanceof Not inner) return inner.operand;
+        return new Not(n);
+    }
+
+    // Flattens nested ANDs (or ORs), drops neutral constants, short-circuits on the absorbing one
+    private static Node junction(List<Node> operands, boolean isAnd) {
+        Node absorbing = isAnd ? Node.FALSE : Node.TRUE;
+        List<Node> flat = new ArrayList<>();
+        for (Node n : operands) {
+            if (n instanceof Const c) {
+                if (c.value != isAnd) return absorbing;
+                continue;
+            }
+            if (isAnd && n instanceof And a) {
+                flat.addAll(Arrays.asList(a.operands));
+            } else if (!isAnd && n instanceof Or o) {
+                flat.addAll(Arrays.asList(o.operands));
+            } else {
+                flat.add(n);
+            }
+        }
+        if (flat.isEmpty()) return isAnd ? Node.TRUE : Node.FALSE;
+        if (flat.size() == 1) return flat.get(0);
+        flat.sort(Comparator.comparingInt(Node::cost));
+        Node[] array = flat.toArray(new Node[0]);
+        return isAnd ? new And(array) : new Or(array);
+    }
+
+    // -------------------------
+    // Lexer
+    // -------------------------
+    private enum Kind { IDENT, STRING, NUMBER, DATE, OP, LPAREN, RPAREN, END }
+
+    private record Token(Kind kind, String text, int pos) {}
+
+    private static List<Token> tokenize(String s) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(new Token(c == '(' ? Kind.LPAREN : Kind.RPAREN, String.valueOf(c), i));
+                i++;
+            } else if (c == '"') {
+                StringBuilder sb = new StringBuilder();
+                int start = i++;
+                while (true) {
+                    if (i >= s.length()) throw error("Unterminated string", start);
+                    char ch = s.charAt(i++);
+                    if (ch == '"') break;
+                    if (ch == '\\' && i < s.length()) ch = s.charAt(i++);
+                    sb.append(ch);
+                }
+                tokens.add(new Token(Kind.STRING, sb.toString(), start));
+            } else if (Character.isDigit(c) || (c == '-' && i + 1 < s.length() && Character.isDigit(s.charAt(i + 1)))) {
+                int start = i++;
+                while (i < s.length() && (Character.isDigit(s.charAt(i)) || s.charAt(i) == '.' || s.charAt(i) == '-')) i++;
+                String text = s.substring(start, i);
+                tokens.add(new Token(text.matches("\\d{4}-\\d{2}-\\d{2}") ? Kind.DATE : Kind.NUMBER, text, start));
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < s.length() && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '_')) i++;
+                tokens.add(new Token(Kind.IDENT, s.substring(start, i), start));
+            } else {
+                String op = i + 1 < s.length() ? s.substring(i, i + 2) : "";
+                if (op.equals("||") || op.equals("&&") || op.equals("==") || op.equals("!=")
+                        || op.equals("<=") || op.equals(">=")) {
+                    tokens.add(new Token(Kind.OP, op, i));
+                    i += 2;
+                } else if (c == '!' || c == '<' || c == '>' || c == '~') {
+                    tokens.add(new Token(Kind.OP, String.valueOf(c), i));
+                    i++;
+                } else {
+                    throw error("Unexpected '" + c + "'", i);
+                }
+            }
+        }
+        tokens.add(new Token(Kind.END, "", s.length()));
+        return tokens;
+    }
+
+    private static IllegalArgumentException error(String message, int pos) {
+        return new IllegalArgumentException(message + " at position " + (pos + 1));
+    }
+
+    // -------------------------
+    // Parser / compiler
+    // -------------------------
+    private static final class Parser {
+        private final List<Token> tokens;
+        private final StringDictionary dictionary;
+        private int next;
+
+        Parser(List<Token> tokens, StringDictionary dictionary) {
+            this.tokens = tokens;
+            this.dictionary = dictionary;
+        }
+
+        Node parseOr() {
+            List<Node> operands = new ArrayList<>(List.of(parseAnd()));
+            while (accept("||")) operands.add(parseAnd());
+            return junction(operands, false);
+        }
+
+        private Node parseAnd() {
+            List<Node> operands = new ArrayList<>(List.of(parseUnary()));
+            while (accept("&&")) operands.add(parseUnary());
+            return junction(operands, true);
+        }
+
+        private Node parseUnary() {
+            if (accept("!")) return not(parseUnary());
+            Token t = tokens.get(next);
+            if (t.kind() == Kind.LPAREN) {
+                next++;
+                Node inner = parseOr();
+                expect(Kind.RPAREN, "')'");
+                return inner;
+            }
+            Token field = expect(Kind.IDENT, "a field name");
+            return switch (field.text()) {
+                case "true" -> Node.TRUE;
+                case "false" -> Node.FALSE;
+                case "reconciled" -> peekOp() ? compileBoolean(field) : new Leaf(Transaction::isReconciled, 1);
+                case "amount" -> compileNumber(field, Transaction::getAmount);
+                case "id" -> compileId(field);
+                case "date" -> compileDate(field);
+                case "type" -> compileString(field, Transaction::getType, true);
+                case "article" -> compileString(field, Transaction::getArticle, true);
+                case "subArticle" -> compileString(field, Transaction::getSubArticle, true);
+                case "wallet" -> compileString(field, Transaction::getWallet, true);
+                case "comment" -> compileString(field, Transaction::getComment, false);
+                default -> throw error("Unknown field '" + field.text() + "'", field.pos());
+            };
+        }
+
+        private Node compileBoolean(Token field) {
+            Token op = expectComparison(field, "==", "!=");
+            Token value = expect(Kind.IDENT, "true or false");
+            if (!value.text().equals("true") && !value.text().equals("false")) {
+                throw error("Expected true or false", value.pos());
+            }
+            boolean wanted = value.text().equals("true") == op.text().equals("==");
+            return wanted ? new Leaf(Transaction::isReconciled, 1) : new Leaf(t -> !t.isReconciled(), 1);
+        }
+
+        private Node compileNumber(Token field, ToDoubleFunction<Transaction> getter) {
+            Token op = expectComparison(field, "==", "!=", "<", "<=", ">", ">=");
+            Token literal = expect(Kind.NUMBER, "a number");
+            double v;
+            try {
+                v = Double.parseDouble(literal.text());
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + literal.text() + "'", literal.pos());
+            }
+            Predicate<Transaction> test = switch (op.text()) {
+                case "==" -> t -> getter.applyAsDouble(t) == v;
+                case "!=" -> t -> getter.applyAsDouble(t) != v;
+                case "<" -> t -> getter.applyAsDouble(t) < v;
+                case "<=" -> t -> getter.applyAsDouble(t) <= v;
+                case ">" -> t -> getter.applyAsDouble(t) > v;
+                default -> t -> getter.applyAsDouble(t) >= v;
+            };
+            return new Leaf(test, 1);
+        }
+
+        /**
+         * Ids use all 64 bits, beyond what a double holds exactly, so they are
+         * compared as longs.
+         */
+        private Node compileId(Token field) {
+            Token op = expectComparison(field, "==", "!=", "<", "<=", ">", ">=");
+            Token literal = expect(Kind.NUMBER, "an id");
+            long v;
+            try {
+                v = Long.parseLong(literal.text());
+            } catch (NumberFormatException e) {
+                throw error("Invalid id '" + literal.text() + "'", literal.pos());
+            }
+            Predicate<Transaction> test = switch (op.text()) {
+                case "==" -> t -> t.getId() == v;
+                case "!=" -> t -> t.getId() != v;
+                case "<" -> t -> t.getId() < v;
+                case "<=" -> t -> t.getId() <= v;
+                case ">" -> t -> t.getId() > v;
+                default -> t -> t.getId() >= v;
+            };
+            return new Leaf(test, 1);
+        }
+
+        private Node compileDate(Token field) {
+            Token op = expectComparison(field, "==", "!=", "<", "<=", ">", ">=");
+            Token literal = tokens.get(next);
+            if (literal.kind() != Kind.DATE && literal.kind() != Kind.STRING) {
+                throw error("Expected a date like 2024-01-31", literal.pos());
+            }
+            next++;
+            LocalDate v;
+            try {
+                v = LocalDate.parse(literal.text());
+            } catch (DateTimeParseException e) {
+                throw error("Invalid date '" + literal.text() + "'", literal.pos());
+            }
+            // Rows without a date only satisfy "!="
+            Predicate<Transaction> test = switch (op.text()) {
+                case "==" -> t -> v.equals(t.getDate());
+                case "!=" -> t -> !v.equals(t.getDate());
+                case "<" -> t -> t.getDate() != null && t.getDate().isBefore(v);
+                case "<=" -> t -> t.getDate() != null && !t.getDate().isAfter(v);
+                case ">" -> t -> t.getDate() != null && t.getDate().isAfter(v);
+                default -> t -> t.getDate() != null && !t.getDate().isBefore(v);
+            };
+            return new Leaf(test, 2);
+        }
+
+        /**
+         * A missing value compares as the empty string. For fields whose values all
+         * pass through the dictionary, equality against a value the dictionary has
+         * never seen is folded to a constant.
+         */
+        private Node compileString(Token field, Function<Transaction, String> getter, boolean interned) {
+            Token op = expectComparison(field, "==", "!=", "~");
+            String literal = expect(Kind.STRING, "a quoted string").text();
+            if (op.text().equals("~")) {
+                if (literal.isEmpty()) return Node.TRUE;
+                String needle = literal.toLowerCase(Locale.ROOT);
+                return new Leaf(t -> containsIgnoreCase(getter.apply(t), needle), interned ? 6 : 8);
+            }
+            boolean equal = op.text().equals("==");
+            if (literal.isEmpty()) {
+                Predicate<Transaction> isEmpty = t -> {
+                    String s = getter.apply(t);
+                    return s == null || s.isEmpty();
+                };
+                return new Leaf(equal ? isEmpty : isEmpty.negate(), 2);
+            }
+            String canonical = interned ? dictionary.lookup(literal) : literal;
+            if (canonical == null) {
+                return equal ? Node.FALSE : Node.TRUE;
+            }
+            // String.equals checks identity first, so interned values compare by reference
+            return new Leaf(equal ? t -> canonical.equals(getter.apply(t)) : t -> !canonical.equals(getter.apply(t)),
+                    interned ? 2 : 4);
+        }
+
+        private boolean peekOp() {
+            return tokens.get(next).kind() == Kind.OP && !tokens.get(next).text().equals("&&")
+                    && !tokens.get(next).text().equals("||");
+        }
+
+        private Token expectComparison(Token field, String... allowed) {
+            Token op = tokens.get(next);
+            if (op.kind() == Kind.OP && Arrays.asList(allowed).contains(op.text())) {
+                next++;
+                return op;
+            }
+            throw error("Expected one of " + String.join(" ", allowed) + " after '" + field.text() + "'", op.pos());
+        }
+
+        private boolean accept(String op) {
+            Token t = tokens.get(next);
+            if (t.kind() == Kind.OP && t.text().equals(op)) {
+                next++;
+                return true;
+            }
+            return false;
+        }
+
+        Token expect(Kind kind, String what) {
+            Token t = tokens.get(next);
+            if (t.kind() != kind) {
+                throw error("Expected " + what + (t.kind() == Kind.END ? "" : " but found '" + t.text() + "'"), t.pos());
+            }
+            next++;
+            return t;
+        }
+    }
+
+    // needle is already lower-case; compares without allocating a lower-cased copy of the row value
+    private static boolean containsIgnoreCase(String haystack, String needle) {
+        if (haystack == null) return false;
+        int max = haystack.length() - needle.length();
+        for (int i = 0; i <= max; i++) {
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) return true;
+        }
+        return false;
+    }
+}
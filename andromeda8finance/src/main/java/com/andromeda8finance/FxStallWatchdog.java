@@ -0,0 +1,184 @@
+package com.andromeda8finance;
+
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.event.EventHandler;
+import javafx.event.EventTarget;
+import javafx.scene.control.Labeled;
+import javafx.scene.input.InputEvent;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.stage.Window;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in watchdog for FX Application Thread stalls.
+ *
+ * A daemon thread keeps one heartbeat posted to the FX thread, posting the next
+ * within a few milliseconds of the previous one running, so a stall is noticed
+ * at most one poll interval after the threshold no matter when it starts. Once
+ * the pending heartbeat has waited longer than the threshold, the FX thread's
+ * stack is sampled every few milliseconds until it runs, and the samples are
+ * written to a rolling log as folded stacks (the input format of flame graph
+ * tools), together with the last user action. While the UI responds only the
+ * heartbeat runs; nothing is sampled.
+ *
+ * Enable with {@code -Dandromeda8finance.watchdog=true}; the threshold defaults to
+ * 100 ms and can be set with {@code -Dandromeda8finance.watchdog.thresholdMs}.
+ */
+class FxStallWatchdog {
+
+    private static final long POLL_INTERVAL_MS = 10;
+    private static final long SAMPLE_INTERVAL_MS = 2;
+    private static final int MAX_REPORTED_STACKS = 20;
+    private static final long MAX_LOG_BYTES = 1 << 20;
+    private static final int MAX_LOG_FILES = 3;
+
+    private final long thresholdNanos;
+    private final Path logFile;
+    private final AtomicLong stalls = new AtomicLong();
+
+    private volatile Thread fxThread;
+    private volatile long acked;     // sequence number of the last heartbeat that ran
+    private volatile long lastAck;   // when it ran
+    private volatile String lastAction = "none";
+
+    FxStallWatchdog(long thresholdMs, Path logFile) {
+        this.thresholdNanos = thresholdMs * 1_000_000L;
+        this.logFile = logFile;
+    }
+
+    /**
+     * Starts a watchdog if enabled by system property, otherwise returns null.
+     * Must be called on the FX thread.
+     */
+    static FxStallWatchdog startIfEnabled(Path logFile) {
+        if (!Boolean.getBoolean("andromeda8finance.watchdog")) {
+            return null;
+        }
+        long threshold = Long.getLong("andromeda8finance.watchdog.thresholdMs", 100);
+        FxStallWatchdog watchdog = new FxStallWatchdog(threshold, logFile);
+        watchdog.start();
+        return watchdog;
+    }
+
+    long stallCount() {
+        return stalls.get();
+    }
+
+    void start() {
+        fxThread = Thread.currentThread();
+        trackUserActions();
+        Thread thread = new Thread(this::run, "andromeda8finance-fx-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Remembers the last mouse press / key press in any window, to explain what triggered a stall
+    private void trackUserActions() {
+        EventHandler<InputEvent> recorder = e -> lastAction = e.getEventType() + " on " + describe(e.getTarget());
+        for (Window w : Window.getWindows()) {
+            w.addEventFilter(MouseEvent.MOUSE_PRESSED, recorder);
+            w.addEventFilter(KeyEvent.KEY_PRESSED, recorder);
+        }
+        Window.getWindows().addListener((ListChangeListener<Window>) c -> {
+            while (c.next()) {
+                for (Window w : c.getAddedSubList()) {
+                    w.addEventFilter(MouseEvent.MOUSE_PRESSED, recorder);
+                    w.addEventFilter(KeyEvent.KEY_PRESSED, recorder);
+                }
+            }
+        });
+    }
+
+    private static String describe(EventTarget target) {
+        if (target instanceof Labeled labeled && labeled.getText() != null) {
+            return target.getClass().getSimpleName() + " '" + labeled.getText() + "'";
+        }
+        return target == null ? "?" : target.getClass().getSimpleName();
+    }
+
+    private void run() {
+        long sequence = 0;
+        long posted = 0;
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                if (acked == sequence) {
+                    long beat = ++sequence;
+                    posted = now;
+                    Platform.runLater(() -> {
+                        lastAck = System.nanoTime();
+                        acked = beat;
+                    });
+                } else if (now - posted > thresholdNanos) {
+                    String action = lastAction;
+                    Map<String, Integer> samples = sampleUntilResponsive(sequence);
+                    long stallMs = (lastAck - posted) / 1_000_000L;
+                    stalls.incrementAndGet();
+                    writeReport(stallMs, action, samples);
+                }
+                Thread.sleep(POLL_INTERVAL_MS);
+            }
+        } catch (InterruptedException e) {
+            // shutting down
+        }
+    }
+
+    // Folded stack (root first, ';'-separated) -> number of samples, taken until the given heartbeat runs
+    private Map<String, Integer> sampleUntilResponsive(long beat) throws InterruptedException {
+        Map<String, Integer> folded = new HashMap<>();
+        Thread thread = fxThread;
+        while (acked != beat) {
+            StackTraceElement[] stack = thread.getStackTrace();
+            StringBuilder sb = new StringBuilder();
+            for (int i = stack.length - 1; i >= 0; i--) {
+                sb.append(stack[i].getClassName()).append('.').append(stack[i].getMethodName());
+                if (i > 0) sb.append(';');
+            }
+            folded.merge(sb.toString(), 1, Integer::sum);
+            Thread.sleep(SAMPLE_INTERVAL_MS);
+        }
+        return folded;
+    }
+
+    private void writeReport(long stallMs, String action, Map<String, Integer> samples) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(samples.entrySet());
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        int total = samples.values().stream().mapToInt(Integer::intValue).sum();
+        try {
+            rollIfNeeded();
+            try (Writer w = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                w.write(LocalDateTime.now() + " FX thread stalled for " + stallMs + " ms after " + action
+                        + " (" + total + " samples)\n");
+                for (int i = 0; i < Math.min(MAX_REPORTED_STACKS, entries.size()); i++) {
+                    w.write(entries.get(i).getKey() + " " + entries.get(i).getValue() + "\n");
+                }
+                w.write("\n");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // andromeda8finance_diagnostics.log -> .1 -> .2 -> .3; the previous .3 is overwritten
+    private void rollIfNeeded() throws IOException {
+        if (!Files.exists(logFile) || Files.size(logFile) < MAX_LOG_BYTES) return;
+        for (int i = MAX_LOG_FILES - 1; i >= 1; i--) {
+            Path from = logFile.resolveSibling(logFile.getFileName() + "." + i);
+            if (Files.exists(from)) {
+                Files.move(from, logFile.resolveSibling(logFile.getFileName() + "." + (i + 1)),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(logFile, logFile.resolveSibling(logFile.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,395 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Article;
+import com.andromeda8finance.Andromeda8FinanceApp.LedgerData;
+import com.andromeda8finance.Andromeda8FinanceApp.StringDictionary;
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import com.andromeda8finance.Andromeda8FinanceApp.Wallet;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Embedded, file-based H2 database backend.
+ *
+ * Transactions are indexed on date, (article, date) and (wallet, date), so period
+ * filters and per-article / per-wallet totals run as indexed queries. Queries use
+ * their own connection, so a background query never runs inside a write
+ * transaction the app has open on the other.
+ */
+class H2LedgerRepository implements LedgerRepository {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final Connection connection;
+    private final Connection queryConnection;
+    private final StringDictionary dictionary;
+
+    /**
+     * Opens (creating if needed) the database stored at {@code basePath}.mv.db.
+     */
+    H2LedgerRepository(Path basePath, StringDictionary dictionary) throws IOException {
+        this.dictionary = dictionary;
+        try {
+            connection = DriverManager.getConnection("jdbc:h2:file:" + basePath.toAbsolutePath());
+            createSchema();
+            queryConnection = DriverManager.getConnection("jdbc:h2:file:" + basePath.toAbsolutePath());
+        } catch (SQLException e) {
+            throw new IOException("Cannot open database " + basePath, e);
+        }
+    }
+
+    private void createSchema() throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS articles ("
+                    + "position INT PRIMARY KEY, name VARCHAR, type VARCHAR)");
+            st.execute("CREATE TABLE IF NOT EXISTS sub_articles ("
+                    + "article_position INT, position INT, name VARCHAR, "
+                    + "PRIMARY KEY (article_position, position))");
+            st.execute("CREATE TABLE IF NOT EXISTS wallets ("
+                    + "position INT PRIMARY KEY, name VARCHAR, initial_balance DOUBLE PRECISION)");
+            st.execute("CREATE TABLE IF NOT EXISTS transactions ("
+                    + "row_id BIGINT AUTO_INCREMENT PRIMARY KEY, tx_date DATE, type VARCHAR, article VARCHAR, "
+                    + "sub_article VARCHAR, wallet VARCHAR, amount DOUBLE PRECISION, comment VARCHAR)");
+            st.execute("ALTER TABLE transactions ADD COLUMN IF NOT EXISTS reconciled BOOLEAN DEFAULT FALSE");
+            // Stable transaction id; rows written before ids existed take their row number
+            st.execute("ALTER TABLE transactions ADD COLUMN IF NOT EXISTS tx_id BIGINT");
+            st.execute("UPDATE transactions SET tx_id = row_id WHERE tx_id IS NULL");
+            st.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_transactions_id ON transactions (tx_id)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_transactions_date ON transactions (tx_date)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_transactions_article ON transactions (article, tx_date)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_transactions_wallet ON transactions (wallet, tx_date)");
+        }
+    }
+
+    boolean isEmpty() throws IOException {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT (SELECT COUNT(*) FROM articles) + (SELECT COUNT(*) FROM wallets)"
+                     + " + (SELECT COUNT(*) FROM transactions)")) {
+            return rs.next() && rs.getLong(1) == 0;
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    long countTransactions() throws IOException {
+        try (PreparedStatement ps = queryConnection.prepareStatement("SELECT COUNT(*) FROM transactions")) {
+            return execute(ps, rs -> rs.next() ? rs.getLong(1) : 0L);
+        } catch (SQLException e) {
+            throw queryFailed(e);
+        }
+    }
+
+    @Override
+    public LedgerData loadAll() throws IOException {
+        LedgerData data = loadDirectories();
+        data.transactions.addAll(findTransactions(null, null));
+        return data;
+    }
+
+    /**
+     * Loads articles and wallets only.
+     */
+    LedgerData loadDirectories() throws IOException {
+        LedgerData data = new LedgerData();
+        try (Statement st = queryConnection.createStatement()) {
+            Map<Integer, Article> byPosition = new HashMap<>();
+            try (ResultSet rs = st.executeQuery("SELECT position, name, type FROM articles ORDER BY position")) {
+                while (rs.next()) {
+                    Article a = new Article(dictionary.intern(rs.getString(2)), dictionary.intern(rs.getString(3)));
+                    byPosition.put(rs.getInt(1), a);
+                    data.articles.add(a);
+                }
+            }
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT article_position, name FROM sub_articles ORDER BY article_position, position")) {
+                while (rs.next()) {
+                    Article a = byPosition.get(rs.getInt(1));
+                    if (a != null) a.getSubArticles().add(dictionary.intern(rs.getString(2)));
+                }
+            }
+            try (ResultSet rs = st.executeQuery("SELECT name, initial_balance FROM wallets ORDER BY position")) {
+                while (rs.next()) {
+                    data.wallets.add(new Wallet(dictionary.intern(rs.getString(1)), rs.getDouble(2)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+        return data;
+    }
+
+    @Override
+    public List<Transaction> findTransactions(LocalDate from, LocalDate to) throws IOException {
+        String sql = "SELECT tx_date, type, article, sub_article, wallet, amount, comment, reconciled, tx_id FROM transactions"
+                + rangeClause(from, to) + " ORDER BY row_id";
+        try (PreparedStatement ps = queryConnection.prepareStatement(sql)) {
+            bindRange(ps, from, to);
+            return execute(ps, rs -> {
+                List<Transaction> result = new ArrayList<>();
+                while (rs.next()) {
+                    if ((result.size() & 0xFFF) == 0) QueryExecutor.checkCancelled();
+                    result.add(readTransaction(rs));
+                }
+                return result;
+            });
+        } catch (SQLException e) {
+            throw queryFailed(e);
+        }
+    }
+
+    @Override
+    public Map<String, Double> sumByArticle(LocalDate from, LocalDate to) throws IOException {
+        return sumBy("article", from, to);
+    }
+
+    @Override
+    public Map<String, Double> sumByWallet(LocalDate from, LocalDate to) throws IOException {
+        return sumBy("wallet", from, to);
+    }
+
+    private Map<String, Double> sumBy(String column, LocalDate from, LocalDate to) throws IOException {
+        String sql = "SELECT " + column + ", SUM(CASE WHEN type = 'Expense' THEN -amount ELSE amount END)"
+                + " FROM transactions" + rangeClause(from, to) + " GROUP BY " + column;
+        try (PreparedStatement ps = queryConnection.prepareStatement(sql)) {
+            bindRange(ps, from, to);
+            return execute(ps, rs -> {
+                Map<String, Double> sums = new TreeMap<>();
+                while (rs.next()) {
+                    sums.put(String.valueOf(rs.getString(1)), rs.getDouble(2));
+                }
+                return sums;
+            });
+        } catch (SQLException e) {
+            throw queryFailed(e);
+        }
+    }
+
+    @Override
+    public void saveAll(List<Article> articles, List<Wallet> wallets, List<Transaction> transactions) throws IOException {
+        inTransaction(repo -> {
+            try (Statement st = connection.createStatement()) {
+                st.execute("DELETE FROM transactions");
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+            writeDirectories(articles, wallets);
+            upsertTransactions(transactions);
+        });
+    }
+
+    /**
+     * Rewrites the (small) article and wallet tables, but touches only the changed transaction rows.
+     */
+    @Override
+    public void saveChanges(List<Article> articles, List<Wallet> wallets, List<Transaction> transactions,
+                            Collection<Transaction> upserts, Collection<Long> deletedIds) throws IOException {
+        inTransaction(repo -> {
+            writeDirectories(articles, wallets);
+            deleteTransactions(deletedIds);
+            upsertTransactions(upserts);
+        });
+    }
+
+    private void writeDirectories(List<Article> articles, List<Wallet> wallets) throws IOException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("DELETE FROM sub_articles");
+            st.execute("DELETE FROM articles");
+            st.execute("DELETE FROM wallets");
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+        writeArticles(articles);
+        writeWallets(wallets);
+    }
+
+    private void writeArticles(List<Article> articles) throws IOException {
+        try (PreparedStatement pa = connection.prepareStatement(
+                     "INSERT INTO articles (position, name, type) VALUES (?, ?, ?)");
+             PreparedStatement ps = connection.prepareStatement(
+                     "INSERT INTO sub_articles (article_position, position, name) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < articles.size(); i++) {
+                Article a = articles.get(i);
+                pa.setInt(1, i);
+                pa.setString(2, a.getName());
+                pa.setString(3, a.getType());
+                pa.addBatch();
+                for (int j = 0; j < a.getSubArticles().size(); j++) {
+                    ps.setInt(1, i);
+                    ps.setInt(2, j);
+                    ps.setString(3, a.getSubArticles().get(j));
+                    ps.addBatch();
+                }
+            }
+            pa.executeBatch();
+            ps.executeBatch();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void writeWallets(List<Wallet> wallets) throws IOException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO wallets (position, name, initial_balance) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < wallets.size(); i++) {
+                ps.setInt(1, i);
+                ps.setString(2, wallets.get(i).getName());
+                ps.setDouble(3, wallets.get(i).getInitialBalance());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void upsertTransactions(Collection<Transaction> batch) throws IOException {
+        String sql = "MERGE INTO transactions (tx_date, type, article, sub_article, wallet, amount, comment, reconciled,"
+                + " tx_id) KEY (tx_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int pending = 0;
+            for (Transaction t : batch) {
+                ps.setObject(1, t.getDate());
+                ps.setString(2, t.getType());
+                ps.setString(3, t.getArticle());
+                ps.setString(4, t.getSubArticle());
+                ps.setString(5, t.getWallet());
+                ps.setDouble(6, t.getAmount());
+                ps.setString(7, t.getComment());
+                ps.setBoolean(8, t.isReconciled());
+                if (t.getId() == 0) {
+                    ps.setNull(9, Types.BIGINT); // no id yet: inserted, then numbered below
+                } else {
+                    ps.setLong(9, t.getId());
+                }
+                ps.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    ps.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) ps.executeBatch();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+        try (Statement st = connection.createStatement()) {
+            st.execute("UPDATE transactions SET tx_id = row_id WHERE tx_id IS NULL");
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void deleteTransactions(Collection<Long> ids) throws IOException {
+        if (ids.isEmpty()) return;
+        try (PreparedStatement ps = connection.prepareStatement("DELETE FROM transactions WHERE tx_id = ?")) {
+            int pending = 0;
+            for (Long id : ids) {
+                ps.setLong(1, id);
+                ps.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    ps.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) ps.executeBatch();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void inTransaction(Work work) throws IOException {
+        try {
+            boolean outermost = connection.getAutoCommit();
+            if (!outermost) {
+                // Already inside a unit of work; let the outer one commit
+                work.run(this);
+                return;
+            }
+            connection.setAutoCommit(false);
+            try {
+                work.run(this);
+                connection.commit();
+            } catch (IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (connection; queryConnection) {
+            // closes both, even if one fails
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private interface ResultReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Runs a query on the query connection. If the background query calling it is
+     * cancelled meanwhile, the statement is cancelled; the thread is never
+     * interrupted, since an interrupt during file I/O breaks the whole store.
+     */
+    private static <T> T execute(PreparedStatement ps, ResultReader<T> reader) throws SQLException {
+        QueryExecutor.Registration registration = QueryExecutor.onCancel(() -> {
+            try {
+                ps.cancel();
+            } catch (SQLException ignored) {
+                // already finished or closed
+            }
+        });
+        try (ResultSet rs = ps.executeQuery()) {
+            return reader.read(rs);
+        } finally {
+            registration.close();
+        }
+    }
+
+    // A statement stopped by cancellation reports as the cancellation, not as an I/O failure
+    private static IOException queryFailed(SQLException e) {
+        QueryExecutor.checkCancelled();
+        return new IOException(e);
+    }
+
+    private Transaction readTransaction(ResultSet rs) throws SQLException {
+        Transaction t = new Transaction();
+        t.setDate(rs.getObject(1, LocalDate.class));
+        t.setType(dictionary.intern(rs.getString(2)));
+        t.setArticle(dictionary.intern(rs.getString(3)));
+        t.setSubArticle(dictionary.intern(rs.getString(4)));
+        t.setWallet(dictionary.intern(rs.getString(5)));
+        t.setAmount(rs.getDouble(6));
+        t.setComment(rs.getString(7));
+        t.setReconciled(rs.getBoolean(8));
+        t.setId(rs.getLong(9));
+        return t;
+    }
+
+    // Undated rows fall in every period, as with Andromeda8FinanceApp.periodFilter
+    private static String rangeClause(LocalDate from, LocalDate to) {
+        if (from != null && to != null) return " WHERE (tx_date IS NULL OR tx_date BETWEEN ? AND ?)";
+        if (from != null) return " WHERE (tx_date IS NULL OR tx_date >= ?)";
+        if (to != null) return " WHERE (tx_date IS NULL OR tx_date <= ?)";
+        return "";
+    }
+
+    private static void bindRange(PreparedStatement ps, LocalDate from, LocalDate to) throws SQLException {
+        int i = 1;
+        if (from != null) ps.setObject(i++, from);
+        if (to != null) ps.setObject(i, to);
+    }
+}
@@ -0,0 +1,251 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Article;
+import com.andromeda8finance.Andromeda8FinanceApp.LedgerData;
+import com.andromeda8finance.Andromeda8FinanceApp.SimpleJsonParser;
+import com.andromeda8finance.Andromeda8FinanceApp.StringDictionary;
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import com.andromeda8finance.Andromeda8FinanceApp.Wallet;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * The original storage: the whole ledger as one hand-written JSON document.
+ *
+ * There are no indexes, so range queries and aggregates read the full file.
+ */
+class JsonLedgerRepository implements LedgerRepository {
+
+    private final Path file;
+    private final StringDictionary dictionary;
+
+    JsonLedgerRepository(Path file, StringDictionary dictionary) {
+        this.file = file;
+        this.dictionary = dictionary;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    @Override
+    public LedgerData loadAll() throws IOException {
+        LedgerData data = new LedgerData();
+        if (!file.toFile().exists()) {
+            return data;
+        }
+        try (BufferedReader br = new BufferedReader(new FileReader(file.toFile()))) {
+            StringBuilder jsonBuilder = new StringBuilder();
+            String line;
+            while ((line = br.readLine()) != null) {
+                jsonBuilder.append(line);
+            }
+            String json = jsonBuilder.toString();
+
+            // minimal JSON parse
+            Map<String, List<Map<String, Object>>> allData = SimpleJsonParser.parseRoot(json);
+
+            // articles
+            for (Map<String, Object> map : allData.get("articles")) {
+                Article a = new Article();
+                a.setName(dictionary.intern((String) map.get("name")));
+                a.setType(dictionary.intern((String) map.get("type")));
+                if (map.get("subArticles") instanceof List) {
+                    List<String> subs = new ArrayList<>();
+                    for (Object o : (List<?>) map.get("subArticles")) {
+                        subs.add(dictionary.intern((String) o));
+                    }
+                    a.setSubArticles(subs);
+                }
+                data.articles.add(a);
+            }
+
+            // wallets
+            for (Map<String, Object> map : allData.get("wallets")) {
+                Wallet w = new Wallet();
+                w.setName(dictionary.intern((String) map.get("name")));
+                Number n = (Number) map.get("initialBalance");
+                if (n != null) {
+                    w.setInitialBalance(n.doubleValue());
+                }
+                data.wallets.add(w);
+            }
+
+            // transactions
+            for (Map<String, Object> map : allData.get("transactions")) {
+                Transaction t = new Transaction();
+                Number id = (Number) map.get("id");
+                if (id != null) t.setId(id.longValue());
+                String dateStr = (String) map.get("date");
+                if (dateStr != null && !dateStr.isBlank()) {
+                    t.setDate(LocalDate.parse(dateStr));
+                }
+                t.setType(dictionary.intern((String) map.get("type")));
+                t.setArticle(dictionary.intern((String) map.get("article")));
+                t.setSubArticle(dictionary.intern((String) map.get("subArticle")));
+                t.setWallet(dictionary.intern((String) map.get("wallet")));
+                Number amt = (Number) map.get("amount");
+                if (amt != null) t.setAmount(amt.doubleValue());
+                t.setComment((String) map.get("comment"));
+                t.setReconciled("true".equals(String.valueOf(map.get("reconciled"))));
+                data.transactions.add(t);
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public List<Transaction> findTransactions(LocalDate from, LocalDate to) throws IOException {
+        Predicate<Transaction> inRange = Andromeda8FinanceApp.periodFilter(from, to);
+        List<Transaction> result = new ArrayList<>();
+        for (Transaction t : loadAll().transactions) {
+            if (inRange.test(t)) result.add(t);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> sumByArticle(LocalDate from, LocalDate to) throws IOException {
+        Map<String, Double> sums = new TreeMap<>();
+        for (Transaction t : findTransactions(from, to)) {
+            sums.merge(String.valueOf(t.getArticle()), Andromeda8FinanceApp.signedAmount(t), Double::sum);
+        }
+        return sums;
+    }
+
+    @Override
+    public Map<String, Double> sumByWallet(LocalDate from, LocalDate to) throws IOException {
+        Map<String, Double> sums = new TreeMap<>();
+        for (Transaction t : findTransactions(from, to)) {
+            sums.merge(String.valueOf(t.getWallet()), Andromeda8FinanceApp.signedAmount(t), Double::sum);
+        }
+        return sums;
+    }
+
+    @Override
+    public void saveAll(List<Article> articles, List<Wallet> wallets, List<Transaction> transactions) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+
+        // articles
+        sb.append("  \"articles\": [\n");
+        for (int i = 0; i < articles.size(); i++) {
+            Article a = articles.get(i);
+            sb.append("    {\n");
+            sb.append("      \"name\": \"").append(escape(a.getName())).append("\",\n");
+            sb.append("      \"type\": \"").append(escape(a.getType())).append("\",\n");
+            sb.append("      \"subArticles\": [");
+            for (int j = 0; j < a.getSubArticles().size(); j++) {
+                sb.append("\"").append(escape(a.getSubArticles().get(j))).append("\"");
+                if (j < a.getSubArticles().size() - 1) {
+                    sb.append(", ");
+                }
+            }
+            sb.append("]\n");
+            sb.append("    }");
+            if (i < articles.size() - 1) sb.append(",");
+            sb.append("\n");
+        }
+        sb.append("  ],\n");
+
+        // wallets
+        sb.append("  \"wallets\": [\n");
+        for (int i = 0; i < wallets.size(); i++) {
+            Wallet w = wallets.get(i);
+            sb.append("    {\n");
+            sb.append("      \"name\": \"").append(escape(w.getName())).append("\",\n");
+            sb.append("      \"initialBalance\": ").append(w.getInitialBalance()).append("\n");
+            sb.append("    }");
+            if (i < wallets.size() - 1) sb.append(",");
+            sb.append("\n");
+        }
+        sb.append("  ],\n");
+
+        // transactions
+        sb.append("  \"transactions\": [\n");
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction t = transactions.get(i);
+            sb.append("    {\n");
+            sb.append("      \"id\": ").append(t.getId()).append(",\n");
+            sb.append("      \"date\": \"").append(t.getDate() == null ? "" : t.getDate().toString()).append("\",\n");
+            sb.append("      \"type\": \"").append(escape(t.getType())).append("\",\n");
+            sb.append("      \"article\": \"").append(escape(t.getArticle())).append("\",\n");
+            sb.append("      \"subArticle\": \"").append(escape(t.getSubArticle())).append("\",\n");
+            sb.append("      \"wallet\": \"").append(escape(t.getWallet())).append("\",\n");
+            sb.append("      \"amount\": ").append(t.getAmount()).append(",\n");
+            sb.append("      \"comment\": \"").append(escape(t.getComment())).append("\",\n");
+            sb.append("      \"reconciled\": ").append(t.isReconciled()).append("\n");
+            sb.append("    }");
+            if (i < transactions.size() - 1) sb.append(",");
+            sb.append("\n");
+        }
+        sb.append("  ]\n");
+        sb.append("}\n");
+
+        try (FileWriter writer = new FileWriter(file.toFile())) {
+            writer.write(sb.toString());
+        }
+    }
+
+    @Override
+    public void upsertTransactions(Collection<Transaction> batch) throws IOException {
+        LedgerData data = loadAll();
+        // Legacy rows all have id 0 and cannot be matched, so they are kept (or added) as they are
+        List<Transaction> rows = data.transactions;
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getId() != 0) positions.put(rows.get(i).getId(), i);
+        }
+        for (Transaction t : batch) {
+            Integer at = t.getId() == 0 ? null : positions.get(t.getId());
+            if (at != null) {
+                rows.set(at, t);
+            } else {
+                if (t.getId() != 0) positions.put(t.getId(), rows.size());
+                rows.add(t);
+            }
+        }
+        saveAll(data.articles, data.wallets, rows);
+    }
+
+    @Override
+    public void deleteTransactions(Collection<Long> ids) throws IOException {
+        Set<Long> doomed = new HashSet<>(ids);
+        doomed.remove(0L); // would match every legacy row
+        LedgerData data = loadAll();
+        data.transactions.removeIf(t -> doomed.contains(t.getId()));
+        saveAll(data.articles, data.wallets, data.transactions);
+    }
+
+    /**
+     * A JSON document cannot be patched in place, so every save rewrites the whole file.
+     */
+    @Override
+    public void saveChanges(List<Article> articles, List<Wallet> wallets, List<Transaction> transactions,
+                            Collection<Transaction> upserts, Collection<Long> deletedIds) throws IOException {
+        saveAll(articles, wallets, transactions);
+    }
+
+    /**
+     * Each write rewrites the whole file; steps already written are not rolled back
+     * if a later step of {@code work} fails.
+     */
+    @Override
+    public void inTransaction(Work work) throws IOException {
+        work.run(this);
+    }
+
+    @Override
+    public void close() {
+        // nothing held open
+    }
+
+    private static String escape(String s) {
+        if (s == null) return "";
+        return s.replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,107 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Article;
+import com.andromeda8finance.Andromeda8FinanceApp.LedgerData;
+import com.andromeda8finance.Andromeda8FinanceApp.StringDictionary;
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import com.andromeda8finance.Andromeda8FinanceApp.Wallet;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage backend for articles, wallets and transactions.
+ *
+ * The app keeps working on in-memory lists and persists them through this
+ * interface; range queries and aggregates let backends with indexes answer
+ * period questions without loading the whole ledger.
+ */
+interface LedgerRepository extends AutoCloseable {
+
+    /**
+     * A unit of work run by {@link #inTransaction}.
+     */
+    @FunctionalInterface
+    interface Work {
+        void run(LedgerRepository repository) throws IOException;
+    }
+
+    /**
+     * Loads the complete ledger.
+     */
+    LedgerData loadAll() throws IOException;
+
+    /**
+     * Returns the transactions dated within [from, to]; either bound may be null.
+     * Undated transactions are included in every period, as in the table's filter.
+     * May be called from a background thread while the app saves.
+     */
+    List<Transaction> findTransactions(LocalDate from, LocalDate to) throws IOException;
+
+    /**
+     * Sums transaction amounts per article over [from, to], expenses counted as
+     * negative; either bound may be null.
+     */
+    Map<String, Double> sumByArticle(LocalDate from, LocalDate to) throws IOException;
+
+    /**
+     * Sums transaction amounts per wallet over [from, to], expenses counted as
+     * negative; either bound may be null.
+     */
+    Map<String, Double> sumByWallet(LocalDate from, LocalDate to) throws IOException;
+
+    /**
+     * Replaces the stored ledger with the given lists.
+     */
+    void saveAll(List<Article> articles, List<Wallet> wallets, List<Transaction> transactions) throws IOException;
+
+    /**
+     * Inserts or replaces a batch of transactions, keyed by id.
+     */
+    void upsertTransactions(Collection<Transaction> batch) throws IOException;
+
+    /**
+     * Deletes the transactions with the given ids; unknown ids are ignored.
+     */
+    void deleteTransactions(Collection<Long> ids) throws IOException;
+
+    /**
+     * Persists the app's state after an edit. {@code upserts} and {@code deletedIds}
+     * are the transaction changes since the last save; backends that can write rows
+     * individually store only those, others may rewrite everything from the full lists.
+     */
+    void saveChanges(List<Article> articles, List<Wallet> wallets, List<Transaction> transactions,
+                     Collection<Transaction> upserts, Collection<Long> deletedIds) throws IOException;
+
+    /**
+     * Runs {@code work} so that either all of its writes are stored or none are.
+     */
+    void inTransaction(Work work) throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Opens the backend named by the {@code andromeda8finance.storage} system property:
+     * {@code json} (default) or {@code h2}. A new, empty H2 database is seeded from
+     * the JSON file if one exists.
+     */
+    static LedgerRepository fromSystemProperties(Path jsonFile, StringDictionary dictionary) throws IOException {
+        JsonLedgerRepository json = new JsonLedgerRepository(jsonFile, dictionary);
+        String storage = System.getProperty("andromeda8finance.storage", "json");
+        if (!storage.equalsIgnoreCase("h2")) {
+            return json;
+        }
+        String name = jsonFile.getFileName().toString().replaceFirst("\\.json$", "");
+        H2LedgerRepository h2 = new H2LedgerRepository(jsonFile.resolveSibling(name), dictionary);
+        if (h2.isEmpty() && jsonFile.toFile().exists()) {
+            LedgerData data = json.loadAll();
+            h2.saveAll(data.articles, data.wallets, data.transactions);
+        }
+        return h2;
+    }
+}
@@ -0,0 +1,241 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.LedgerData;
+import com.andromeda8finance.Andromeda8FinanceApp.StringDictionary;
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import com.andromeda8finance.Andromeda8FinanceApp.Wallet;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+/**
+ * Several ledger files opened side by side, read-only, for consolidated reporting.
+ *
+ * Each ledger is loaded on its own thread, so opening N ledgers takes about as
+ * long as the largest one. Aggregates are computed per ledger in parallel and
+ * merged; a {@link NameMapping} unifies article and wallet names that differ
+ * between ledgers. H2 ledgers keep their transactions in the database: only the
+ * directories are loaded, and aggregates are queried per consolidation.
+ */
+class LedgerWorkspace {
+
+    /**
+     * An opened ledger. For an H2 ledger {@code data} holds the directories only.
+     */
+    record Ledger(String name, Path file, LedgerData data, long transactionCount) {
+
+        boolean database() {
+            return file.getFileName().toString().endsWith(".mv.db");
+        }
+
+        H2LedgerRepository openDatabase(StringDictionary dictionary) throws IOException {
+            return new H2LedgerRepository(file.resolveSibling(name), dictionary);
+        }
+    }
+
+    /**
+     * One row of a consolidated table: a (mapped) article or wallet name with its
+     * value in each ledger and the total across all of them.
+     */
+    record ConsolidatedRow(String name, Map<String, Double> perLedger, double total) {}
+
+    record Consolidation(List<ConsolidatedRow> byArticle, List<ConsolidatedRow> byWallet) {}
+
+    /**
+     * Maps ledger-specific names onto shared ones. Read from a properties file with
+     * keys like {@code article.Groceries=Food} and {@code wallet.Chase checking=Checking}.
+     */
+    static class NameMapping {
+        private final Map<String, String> articles = new HashMap<>();
+        private final Map<String, String> wallets = new HashMap<>();
+
+        static NameMapping none() {
+            return new NameMapping();
+        }
+
+        static NameMapping load(Path file) throws IOException {
+            Properties props = new Properties();
+            try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                props.load(r);
+            }
+            NameMapping mapping = new NameMapping();
+            for (String key : props.stringPropertyNames()) {
+                String target = props.getProperty(key).trim();
+                if (key.startsWith("article.")) {
+                    mapping.articles.put(key.substring("article.".length()), target);
+                } else if (key.startsWith("wallet.")) {
+                    mapping.wallets.put(key.substring("wallet.".length()), target);
+                }
+            }
+            return mapping;
+        }
+
+        String article(String name) {
+            return articles.getOrDefault(name, name);
+        }
+
+        String wallet(String name) {
+            return wallets.getOrDefault(name, name);
+        }
+    }
+
+    private final List<Ledger> ledgers;
+    private final NameMapping mapping;
+    private final StringDictionary dictionary;
+
+    private LedgerWorkspace(List<Ledger> ledgers, NameMapping mapping, StringDictionary dictionary) {
+        this.ledgers = ledgers;
+        this.mapping = mapping;
+        this.dictionary = dictionary;
+    }
+
+    List<Ledger> ledgers() {
+        return ledgers;
+    }
+
+    /**
+     * Loads every file concurrently. JSON files use the JSON backend; {@code .mv.db}
+     * files are opened as H2 databases.
+     */
+    static LedgerWorkspace open(List<Path> files, NameMapping mapping, StringDictionary dictionary) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, files.size()), r -> {
+            Thread t = new Thread(r, "andromeda8finance-ledger-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Ledger>> futures = new ArrayList<>();
+            for (Path file : files) {
+                futures.add(pool.submit(() -> load(file, dictionary)));
+            }
+            List<Ledger> loaded = new ArrayList<>();
+            for (Future<Ledger> f : futures) {
+                loaded.add(f.get());
+            }
+            return new LedgerWorkspace(loaded, mapping, dictionary);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Loading was interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Ledger load(Path file, StringDictionary dictionary) throws IOException {
+        String fileName = file.getFileName().toString();
+        if (fileName.endsWith(".mv.db")) {
+            String name = fileName.substring(0, fileName.length() - ".mv.db".length());
+            try (H2LedgerRepository repo = new H2LedgerRepository(file.resolveSibling(name), dictionary)) {
+                return new Ledger(name, file, repo.loadDirectories(), repo.countTransactions());
+            }
+        }
+        try (LedgerRepository repo = new JsonLedgerRepository(file, dictionary)) {
+            LedgerData data = repo.loadAll();
+            return new Ledger(fileName.replaceFirst("\\.json$", ""), file, data, data.transactions.size());
+        }
+    }
+
+    /**
+     * Computes net totals per article over [from, to] and closing balances per
+     * wallet as of {@code to} (initial balance plus every flow up to then) for every
+     * ledger in parallel, then merges them under the mapped names. {@code expression}
+     * narrows the rows further and may be null. For an H2 ledger the dates are
+     * applied by the database, and without an expression the totals are summed
+     * there too.
+     */
+    Consolidation consolidate(LocalDate from, LocalDate to, Predicate<Transaction> expression) throws IOException {
+        record Partial(String ledger, Map<String, Double> articles, Map<String, Double> wallets) {}
+
+        Predicate<Transaction> inPeriod = Andromeda8FinanceApp.periodFilter(from, to);
+        Predicate<Transaction> toEnd = Andromeda8FinanceApp.periodFilter(null, to);
+        if (expression != null) {
+            inPeriod = inPeriod.and(expression);
+            toEnd = toEnd.and(expression);
+        }
+        Predicate<Transaction> articleFilter = inPeriod;
+        Predicate<Transaction> walletFilter = toEnd;
+        // Pool threads do not inherit the query's cancellation, which stops H2 statements
+        QueryExecutor.Cancellation cancellation = QueryExecutor.current();
+
+        List<Partial> partials;
+        try {
+            partials = ledgers.parallelStream().map(ledger -> {
+                Map<String, Double> articles = new HashMap<>();
+                Map<String, Double> wallets = new HashMap<>();
+                for (Wallet w : ledger.data().wallets) {
+                    wallets.merge(mapping.wallet(w.getName()), w.getInitialBalance(), Double::sum);
+                }
+                if (!ledger.database()) {
+                    addRows(ledger.data().transactions, articleFilter, walletFilter, articles, wallets);
+                } else {
+                    try {
+                        cancellation.runAs(() -> {
+                            addDatabaseRows(ledger, from, to, articleFilter, walletFilter, expression == null,
+                                    articles, wallets);
+                            return null;
+                        });
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return new Partial(ledger.name(), articles, wallets);
+            }).toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Map<String, Map<String, Double>> byArticle = new TreeMap<>();
+        Map<String, Map<String, Double>> byWallet = new TreeMap<>();
+        for (Partial p : partials) {
+            p.articles().forEach((name, v) -> byArticle.computeIfAbsent(name, k -> new LinkedHashMap<>()).put(p.ledger(), v));
+            p.wallets().forEach((name, v) -> byWallet.computeIfAbsent(name, k -> new LinkedHashMap<>()).put(p.ledger(), v));
+        }
+        return new Consolidation(toRows(byArticle), toRows(byWallet));
+    }
+
+    // Without an expression both sums run in the database; otherwise the rows up to
+    // the end date are fetched once and filtered here
+    private void addDatabaseRows(Ledger ledger, LocalDate from, LocalDate to,
+                                 Predicate<Transaction> articleFilter, Predicate<Transaction> walletFilter,
+                                 boolean periodOnly, Map<String, Double> articles, Map<String, Double> wallets)
+            throws IOException {
+        try (H2LedgerRepository repo = ledger.openDatabase(dictionary)) {
+            if (periodOnly) {
+                repo.sumByArticle(from, to).forEach((name, v) -> articles.merge(mapping.article(name), v, Double::sum));
+                repo.sumByWallet(null, to).forEach((name, v) -> wallets.merge(mapping.wallet(name), v, Double::sum));
+            } else {
+                addRows(repo.findTransactions(null, to), articleFilter, walletFilter, articles, wallets);
+            }
+        }
+    }
+
+    private void addRows(List<Transaction> rows, Predicate<Transaction> articleFilter,
+                         Predicate<Transaction> walletFilter, Map<String, Double> articles, Map<String, Double> wallets) {
+        for (Transaction t : rows) {
+            double signed = Andromeda8FinanceApp.signedAmount(t);
+            if (articleFilter.test(t)) {
+                articles.merge(mapping.article(String.valueOf(t.getArticle())), signed, Double::sum);
+            }
+            if (walletFilter.test(t)) {
+                wallets.merge(mapping.wallet(String.valueOf(t.getWallet())), signed, Double::sum);
+            }
+        }
+    }
+
+    private static List<ConsolidatedRow> toRows(Map<String, Map<String, Double>> merged) {
+        List<ConsolidatedRow> rows = new ArrayList<>(merged.size());
+        merged.forEach((name, perLedger) -> rows.add(new ConsolidatedRow(name, perLedger,
+                perLedger.values().stream().mapToDouble(Double::doubleValue).sum())));
+        return rows;
+    }
+}
@@ -0,0 +1,263 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import javafx.collections.ObservableListBase;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Read-only observable list that materializes rows page by page from a
+ * {@link PageSource}, keeping only a small LRU of recently viewed pages.
+ *
+ * TableView only ever asks for {@code size()} and the rows it is drawing, so
+ * scrolling a huge range touches a handful of pages instead of the whole result.
+ */
+public class PagedTransactionList extends ObservableListBase<Transaction> {
+
+    /**
+     * Anything that can report a row count and hand out a slice of rows.
+     */
+    public interface PageSource {
+        int size();
+
+        /**
+         * Returns the rows in [from, to).
+         */
+        List<Transaction> fetch(int from, int to);
+
+        /**
+         * Returns this source reordered by {@code comparator}, or null if it cannot be sorted.
+         */
+        default PageSource sorted(Comparator<? super Transaction> comparator) {
+            return null;
+        }
+    }
+
+    private static final int DEFAULT_PAGE_SIZE = 256;
+    private static final int DEFAULT_MAX_PAGES = 32;
+    private static final int EXPORT_PAGE_SIZE = 4096;
+
+    private final PageSource unsorted;
+    private PageSource source;
+    private Object order;
+    private final int pageSize;
+    private final Map<Integer, List<Transaction>> pages;
+
+    /**
+     * Creates a list showing {@code current}, typically a pre-sorted view of
+     * {@code unsorted}; {@code order} identifies that sort, see {@link #order()}.
+     */
+    public PagedTransactionList(PageSource unsorted, PageSource current, Object order) {
+        this(unsorted, current, order, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    public PagedTransactionList(PageSource unsorted, PageSource current, Object order, int pageSize, int maxPages) {
+        this.unsorted = unsorted;
+        this.source = current;
+        this.order = order;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<>(maxPages * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Transaction>> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    @Override
+    public Transaction get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        int page = index / pageSize;
+        List<Transaction> rows = pages.get(page);
+        if (rows == null) {
+            int from = page * pageSize;
+            rows = source.fetch(from, Math.min(from + pageSize, source.size()));
+            pages.put(page, rows);
+        }
+        return rows.get(index - page * pageSize);
+    }
+
+    @Override
+    public int size() {
+        return source.size();
+    }
+
+    /**
+     * Caller-defined key of the sort currently shown, so a sort policy can skip
+     * re-sorting into the order the list already has.
+     */
+    public Object order() {
+        return order;
+    }
+
+    /**
+     * The source currently shown, in display order.
+     */
+    public PageSource currentSource() {
+        return source;
+    }
+
+    /**
+     * Iterates over all rows of {@code source}, fetching one page at a time so only
+     * a single page is held in memory.
+     */
+    public static Iterable<Transaction> rows(PageSource source) {
+        return () -> new Iterator<>() {
+            private final int size = source.size();
+            private List<Transaction> page = List.of();
+            private int pageStart;
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Transaction next() {
+                if (next >= size) throw new NoSuchElementException();
+                if (next - pageStart >= page.size()) {
+                    QueryExecutor.checkCancelled();
+                    pageStart = next;
+                    page = source.fetch(next, Math.min(size, next + EXPORT_PAGE_SIZE));
+                }
+                return page.get(next++ - pageStart);
+            }
+        };
+    }
+
+    /**
+     * Computes the source ordered by {@code comparator} without touching the list,
+     * so it can run on a background thread. Returns null if sorting is unsupported.
+     */
+    public PageSource sortedSource(Comparator<? super Transaction> comparator) {
+        return comparator == null ? unsorted : unsorted.sorted(comparator);
+    }
+
+    /**
+     * Switches the list to {@code next} (a reordering of the same rows, in the sort
+     * identified by {@code order}) and notifies listeners.
+     */
+    public void showSource(PageSource next, Object order) {
+        PageSource previous = source;
+        source = next;
+        this.order = order;
+        pages.clear();
+        beginChange();
+        // The removed rows are exposed lazily so a reorder never copies the whole range
+        nextReplace(0, size(), new AbstractList<>() {
+            @Override
+            public Transaction get(int index) {
+                return previous.fetch(index, index + 1).get(0);
+            }
+
+            @Override
+            public int size() {
+                return previous.size();
+            }
+        });
+        endChange();
+    }
+
+    /**
+     * Query result over an in-memory snapshot: the matching rows are kept as an
+     * int index into the snapshot array rather than as a list of beans.
+     */
+    public static final class IndexSource implements PageSource {
+        private static final int PARALLEL_FILTER_THRESHOLD = 1 << 17;
+        private static final int FILTER_CHUNK = 1 << 15;
+
+        private final Transaction[] rows;
+        private final int[] index;
+
+        private IndexSource(Transaction[] rows, int[] index) {
+            this.rows = rows;
+            this.index = index;
+        }
+
+        /**
+         * Builds a source over the rows of {@code snapshot} accepted by {@code filter}.
+         * Large snapshots are tested in parallel chunks, so {@code filter} must be safe
+         * to call from several threads; matches keep their snapshot order.
+         */
+        public static IndexSource filter(Transaction[] snapshot, Predicate<Transaction> filter) {
+            if (snapshot.length < PARALLEL_FILTER_THRESHOLD) {
+                return new IndexSource(snapshot, matches(snapshot, filter, 0, snapshot.length, QueryExecutor.current()));
+            }
+            QueryExecutor.Cancellation cancellation = QueryExecutor.current();
+            int chunks = (snapshot.length + FILTER_CHUNK - 1) / FILTER_CHUNK;
+            int[][] parts = new int[chunks][];
+            IntStream.range(0, chunks).parallel().forEach(c -> parts[c] = matches(snapshot, filter,
+                    c * FILTER_CHUNK, Math.min(snapshot.length, (c + 1) * FILTER_CHUNK), cancellation));
+            QueryExecutor.checkCancelled();
+            int total = 0;
+            for (int[] part : parts) total += part.length;
+            int[] index = new int[total];
+            int n = 0;
+            for (int[] part : parts) {
+                System.arraycopy(part, 0, index, n, part.length);
+                n += part.length;
+            }
+            return new IndexSource(snapshot, index);
+        }
+
+        // Indexes in [from, to) accepted by filter, stopping if the query is cancelled
+        private static int[] matches(Transaction[] snapshot, Predicate<Transaction> filter, int from, int to,
+                                     QueryExecutor.Cancellation cancellation) {
+            int[] matches = new int[Math.min(to - from, 1024)];
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                if ((i & 0xFFFF) == 0 && cancellation.isCancelled()) throw new CancellationException();
+                if (filter.test(snapshot[i])) {
+                    if (n == matches.length) matches = Arrays.copyOf(matches, Math.max(16, n * 2));
+                    matches[n++] = i;
+                }
+            }
+            return Arrays.copyOf(matches, n);
+        }
+
+        @Override
+        public int size() {
+            return index.length;
+        }
+
+        @Override
+        public List<Transaction> fetch(int from, int to) {
+            List<Transaction> page = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                page.add(rows[index[i]]);
+            }
+            return page;
+        }
+
+        @Override
+        public PageSource sorted(Comparator<? super Transaction> comparator) {
+            int[] order = index.clone();
+            int[] buffer = new int[order.length];
+            mergeSort(order, buffer, 0, order.length, comparator);
+            return new IndexSource(rows, order);
+        }
+
+        // Stable merge sort over row indexes, avoiding a boxed Integer per row
+        private void mergeSort(int[] a, int[] tmp, int from, int to, Comparator<? super Transaction> c) {
+            if (to - from < 2) return;
+            if (to - from > 0xFFFF) QueryExecutor.checkCancelled();
+            int mid = (from + to) >>> 1;
+            mergeSort(a, tmp, from, mid, c);
+            mergeSort(a, tmp, mid, to, c);
+            if (c.compare(rows[a[mid - 1]], rows[a[mid]]) <= 0) return;
+            System.arraycopy(a, from, tmp, from, to - from);
+            int i = from, j = mid, k = from;
+            while (i < mid && j < to) {
+                a[k++] = c.compare(rows[tmp[j]], rows[tmp[i]]) < 0 ? tmp[j++] : tmp[i++];
+            }
+            while (i < mid) a[k++] = tmp[i++];
+            while (j < to) a[k++] = tmp[j++];
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.andromeda8finance;
+
+import javafx.animation.PauseTransition;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.concurrent.Task;
+import javafx.util.Duration;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs view queries (period filters, searches, report builds) off the FX thread.
+ *
+ * Queries are grouped by channel: submitting a new query on a channel cancels the
+ * one still in flight there, and only the latest query's result is delivered.
+ * Jobs with side effects, such as exports, go through {@link #run} instead and are
+ * never superseded.
+ * All public methods must be called on the FX Application Thread; callbacks are
+ * delivered there too.
+ *
+ * Cancelling never interrupts the worker thread: H2 treats an interrupt during file
+ * I/O as a failure of the whole store, breaking every connection to it. Running
+ * code polls {@link #checkCancelled} instead, and JDBC code registers
+ * {@link #onCancel} hooks that cancel its statement.
+ */
+class QueryExecutor {
+
+    private static final Duration BUSY_DELAY = Duration.millis(200);
+
+    private final ExecutorService executor;
+    private final Map<String, QueryTask<?>> inFlight = new HashMap<>();
+    private final Set<QueryTask<?>> jobs = new HashSet<>();
+    private final Map<String, PauseTransition> debouncers = new HashMap<>();
+    private final ReadOnlyBooleanWrapper busy = new ReadOnlyBooleanWrapper(false);
+    private final PauseTransition busyDelay = new PauseTransition(BUSY_DELAY);
+
+    private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Cancellation state of one query or job, shared with any threads it fans out to.
+     */
+    static final class Cancellation {
+        private volatile boolean cancelled;
+        private final List<Runnable> hooks = new ArrayList<>();
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        void cancel() {
+            List<Runnable> toRun;
+            synchronized (this) {
+                if (cancelled) return;
+                cancelled = true;
+                toRun = new ArrayList<>(hooks);
+                hooks.clear();
+            }
+            toRun.forEach(Runnable::run);
+        }
+
+        /**
+         * Runs {@code hook} on cancellation, or right away if already cancelled,
+         * until the returned registration is closed.
+         */
+        Registration onCancel(Runnable hook) {
+            synchronized (this) {
+                if (!cancelled) {
+                    hooks.add(hook);
+                    return () -> {
+                        synchronized (this) {
+                            hooks.remove(hook);
+                        }
+                    };
+                }
+            }
+            hook.run();
+            return () -> {};
+        }
+
+        /**
+         * Runs {@code work} on the calling thread with this as its current cancellation.
+         */
+        <T, E extends Exception> T runAs(Work<T, E> work) throws E {
+            Cancellation outer = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                return work.call();
+            } finally {
+                if (outer == null) CURRENT.remove();
+                else CURRENT.set(outer);
+            }
+        }
+    }
+
+    interface Work<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final class QueryTask<T> extends Task<T> {
+        final Cancellation cancellation = new Cancellation();
+        private final Callable<T> work;
+
+        QueryTask(Callable<T> work) {
+            this.work = work;
+        }
+
+        @Override
+        protected T call() throws Exception {
+            return cancellation.runAs(work::call);
+        }
+
+        void stop() {
+            cancellation.cancel();
+            cancel(false);
+        }
+    }
+
+    QueryExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "andromeda8finance-query-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // Only show progress for queries that are actually slow, to avoid flicker
+        busyDelay.setOnFinished(e -> busy.set(!idle()));
+    }
+
+    /**
+     * True while at least one query has been running longer than a short grace period.
+     */
+    ReadOnlyBooleanProperty busyProperty() {
+        return busy.getReadOnlyProperty();
+    }
+
+    /**
+     * Runs {@code action} on the FX thread once {@code channel} has been quiet for {@code delay}.
+     * Each call restarts the wait, so a burst of input changes triggers a single query.
+     */
+    void debounce(String channel, Duration delay, Runnable action) {
+        PauseTransition pause = debouncers.computeIfAbsent(channel, k -> new PauseTransition());
+        pause.stop();
+        pause.setDuration(delay);
+        pause.setOnFinished(e -> action.run());
+        pause.playFromStart();
+    }
+
+    /**
+     * Runs {@code query} in the background, cancelling any query still running on
+     * the same channel. {@code onResult} is only called for the latest query.
+     */
+    <T> void submit(String channel, Callable<T> query, Consumer<T> onResult, Consumer<Throwable> onError) {
+        QueryTask<?> previous = inFlight.get(channel);
+        if (previous != null) {
+            previous.stop();
+        }
+
+        QueryTask<T> task = new QueryTask<>(query);
+        inFlight.put(channel, task);
+        task.setOnSucceeded(e -> {
+            if (finish(channel, task)) onResult.accept(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            if (finish(channel, task) && onError != null) onError.accept(task.getException());
+        });
+        task.setOnCancelled(e -> finish(channel, task));
+
+        if (!busy.get()) busyDelay.playFromStart();
+        executor.execute(task);
+    }
+
+    /**
+     * Runs {@code job} in the background. Unlike {@link #submit}, later calls never
+     * cancel it and its outcome is always delivered.
+     */
+    <T> void run(Callable<T> job, Consumer<T> onResult, Consumer<Throwable> onError) {
+        QueryTask<T> task = new QueryTask<>(job);
+        jobs.add(task);
+        task.setOnSucceeded(e -> {
+            finishJob(task);
+            onResult.accept(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            finishJob(task);
+            onError.accept(task.getException());
+        });
+        task.setOnCancelled(e -> {
+            finishJob(task);
+            onError.accept(new CancellationException("Cancelled"));
+        });
+
+        if (!busy.get()) busyDelay.playFromStart();
+        executor.execute(task);
+    }
+
+    /**
+     * Cancels everything and stops the worker threads.
+     */
+    void shutdown() {
+        debouncers.values().forEach(PauseTransition::stop);
+        new ArrayList<>(inFlight.values()).forEach(QueryTask::stop);
+        inFlight.clear();
+        new ArrayList<>(jobs).forEach(QueryTask::stop);
+        jobs.clear();
+        executor.shutdown();
+    }
+
+    /**
+     * The cancellation of the query running on the calling thread, for handing to
+     * worker threads it fans out to; a never-cancelled one outside queries.
+     */
+    static Cancellation current() {
+        Cancellation c = CURRENT.get();
+        return c != null ? c : new Cancellation();
+    }
+
+    /**
+     * Throws if the calling query has been cancelled. Long loops call this
+     * periodically so a stale query stops early instead of running to completion.
+     */
+    static void checkCancelled() {
+        Cancellation c = CURRENT.get();
+        if ((c != null && c.isCancelled()) || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Runs {@code hook} if the calling query is cancelled before the returned
+     * registration is closed. Does nothing outside queries.
+     */
+    static Registration onCancel(Runnable hook) {
+        Cancellation c = CURRENT.get();
+        return c != null ? c.onCancel(hook) : () -> {};
+    }
+
+    // Returns true if the task was still the latest on its channel
+    private boolean finish(String channel, QueryTask<?> task) {
+        boolean latest = inFlight.get(channel) == task;
+        if (latest) {
+            inFlight.remove(channel);
+        }
+        updateBusy();
+        return latest && !task.isCancelled();
+    }
+
+    private void finishJob(QueryTask<?> task) {
+        jobs.remove(task);
+        updateBusy();
+    }
+
+    private void updateBusy() {
+        if (idle()) {
+            busyDelay.stop();
+            busy.set(false);
+        }
+    }
+
+    private boolean idle() {
+        return inFlight.isEmpty() && jobs.isEmpty();
+    }
+}
@@ -0,0 +1,60 @@
+package com.andromeda8finance;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Named filter expressions, kept in a properties file (name=expression) so they
+ * can be reused by the table, exports and workspace reports.
+ */
+class SavedFilters {
+
+    private final Path file;
+    private final Map<String, String> filters = new TreeMap<>();
+
+    private SavedFilters(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the file; a missing file gives an empty set.
+     */
+    static SavedFilters load(Path file) throws IOException {
+        SavedFilters saved = new SavedFilters(file);
+        if (Files.exists(file)) {
+            Properties props = new Properties();
+            try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                props.load(r);
+            }
+            for (String name : props.stringPropertyNames()) {
+                saved.filters.put(name, props.getProperty(name));
+            }
+        }
+        return saved;
+    }
+
+    List<String> names() {
+        return new ArrayList<>(filters.keySet());
+    }
+
+    String get(String name) {
+        return filters.get(name);
+    }
+
+    /**
+     * Adds or replaces a filter and writes the file.
+     */
+    void put(String name, String expression) throws IOException {
+        filters.put(name, expression);
+        Properties props = new Properties();
+        props.putAll(filters);
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            props.store(w, "Andromeda8 Finance saved filters");
+        }
+    }
+}
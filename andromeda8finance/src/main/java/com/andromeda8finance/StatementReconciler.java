@@ -0,0 +1,213 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Matches bank statement lines against ledger transactions of one wallet.
+ *
+ * The ledger side is hashed on the signed amount in cents (expenses negative),
+ * and each bucket is sorted by date; a statement line probes its bucket and
+ * binary-searches the rows within the date tolerance, so repeated amounts cost
+ * only their window. A statement without any negative line is taken to list
+ * magnitudes only and is matched on the absolute amount. When several candidates
+ * remain, comment similarity and then date distance break the tie; if they still
+ * cannot separate the best two, the line is reported as ambiguous.
+ */
+class StatementReconciler {
+
+    record StatementLine(LocalDate date, double amount, String description) {}
+
+    enum Status { MATCHED, AMBIGUOUS, UNMATCHED }
+
+    /**
+     * Outcome for one statement line. {@code transaction} is set for matched lines,
+     * {@code candidates} lists the contenders for ambiguous ones.
+     */
+    record Match(StatementLine line, Status status, Transaction transaction, List<Transaction> candidates) {}
+
+    /**
+     * All line outcomes plus the ledger rows in the statement period that no line claimed.
+     */
+    record Result(List<Match> matches, List<Transaction> unmatchedLedger) {
+        long count(Status status) {
+            return matches.stream().filter(m -> m.status() == status).count();
+        }
+    }
+
+    private record Scored(Transaction transaction, double similarity, long days) {}
+
+    private static final Comparator<Scored> BEST_FIRST = Comparator
+            .comparingDouble((Scored c) -> -c.similarity())
+            .thenComparingLong(Scored::days);
+
+    private final int dateToleranceDays;
+
+    StatementReconciler(int dateToleranceDays) {
+        this.dateToleranceDays = Math.max(0, dateToleranceDays);
+    }
+
+    /**
+     * Matches {@code lines} against {@code ledger}, which should hold the wallet's
+     * transactions that are not reconciled yet. Each transaction is matched at most once.
+     */
+    Result reconcile(List<StatementLine> lines, List<Transaction> ledger) {
+        boolean signed = lines.stream().anyMatch(l -> l.amount() < 0);
+        Map<Long, List<Transaction>> byAmount = new HashMap<>();
+        for (Transaction t : ledger) {
+            if (t.getDate() == null) continue;
+            double amount = signed ? Andromeda8FinanceApp.signedAmount(t) : Math.abs(t.getAmount());
+            byAmount.computeIfAbsent(cents(amount), k -> new ArrayList<>(2)).add(t);
+        }
+        for (List<Transaction> bucket : byAmount.values()) {
+            bucket.sort(Comparator.comparing(Transaction::getDate));
+        }
+
+        List<StatementLine> ordered = new ArrayList<>(lines);
+        ordered.sort(Comparator.comparing(StatementLine::date));
+        Set<Transaction> claimed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<Transaction, Set<String>> commentWords = new IdentityHashMap<>();
+        List<Match> matches = new ArrayList<>(ordered.size());
+        LocalDate first = null, last = null;
+
+        for (StatementLine line : ordered) {
+            if (first == null) first = line.date();
+            last = line.date();
+            double amount = signed ? line.amount() : Math.abs(line.amount());
+            List<Transaction> bucket = byAmount.getOrDefault(cents(amount), Collections.emptyList());
+            List<Transaction> candidates = new ArrayList<>(2);
+            long latest = line.date().toEpochDay() + dateToleranceDays;
+            for (int i = firstOnOrAfter(bucket, line.date().toEpochDay() - dateToleranceDays); i < bucket.size(); i++) {
+                Transaction t = bucket.get(i);
+                if (t.getDate().toEpochDay() > latest) break;
+                if (!claimed.contains(t)) candidates.add(t);
+            }
+            if (candidates.isEmpty()) {
+                matches.add(new Match(line, Status.UNMATCHED, null, List.of()));
+                continue;
+            }
+            if (candidates.size() > 1) {
+                // Score each candidate once, and split each ledger comment only once overall
+                Set<String> words = words(line.description());
+                List<Scored> scored = new ArrayList<>(candidates.size());
+                for (Transaction t : candidates) {
+                    Set<String> comment = commentWords.computeIfAbsent(t, k -> words(k.getComment()));
+                    scored.add(new Scored(t, similarity(words, comment), daysBetween(t.getDate(), line.date())));
+                }
+                scored.sort(BEST_FIRST);
+                if (BEST_FIRST.compare(scored.get(0), scored.get(1)) == 0) {
+                    matches.add(new Match(line, Status.AMBIGUOUS, null, scored.stream().map(Scored::transaction).toList()));
+                    continue;
+                }
+                candidates.set(0, scored.get(0).transaction());
+            }
+            Transaction chosen = candidates.get(0);
+            claimed.add(chosen);
+            matches.add(new Match(line, Status.MATCHED, chosen, List.of()));
+        }
+
+        List<Transaction> unmatchedLedger = new ArrayList<>();
+        if (first != null) {
+            for (Transaction t : ledger) {
+                if (t.getDate() != null && !claimed.contains(t)
+                        && !t.getDate().isBefore(first) && !t.getDate().isAfter(last)) {
+                    unmatchedLedger.add(t);
+                }
+            }
+        }
+        return new Result(matches, unmatchedLedger);
+    }
+
+    /**
+     * Reads "date,amount,description" lines; a header row and unparsable rows are skipped.
+     * Fields may be quoted with double quotes.
+     */
+    static List<StatementLine> readCsv(Path file) throws IOException {
+        List<StatementLine> lines = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String row;
+            while ((row = br.readLine()) != null) {
+                List<String> fields = splitCsv(row);
+                if (fields.size() < 2) continue;
+                try {
+                    LocalDate date = LocalDate.parse(fields.get(0).trim());
+                    double amount = Double.parseDouble(fields.get(1).trim());
+                    String description = fields.size() > 2 ? fields.get(2) : "";
+                    lines.add(new StatementLine(date, amount, description));
+                } catch (DateTimeParseException | NumberFormatException e) {
+                    // header or malformed row
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static List<String> splitCsv(String row) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (c == '"') {
+                if (inQuotes && i + 1 < row.length() && row.charAt(i + 1) == '"') {
+                    sb.append('"');
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else if (c == ',' && !inQuotes) {
+                fields.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        fields.add(sb.toString());
+        return fields;
+    }
+
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    // Index of the first row of a date-sorted bucket dated on or after the given day
+    private static int firstOnOrAfter(List<Transaction> bucket, long epochDay) {
+        int lo = 0, hi = bucket.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (bucket.get(mid).getDate().toEpochDay() < epochDay) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static long daysBetween(LocalDate a, LocalDate b) {
+        return Math.abs(a.toEpochDay() - b.toEpochDay());
+    }
+
+    private static Set<String> words(String text) {
+        String normalized = DuplicateIndex.normalizeComment(text);
+        return normalized.isEmpty() ? Set.of() : new HashSet<>(Arrays.asList(normalized.split(" ")));
+    }
+
+    // Dice coefficient over word sets
+    private static double similarity(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) return 0;
+        int common = 0;
+        for (String w : a) {
+            if (b.contains(w)) common++;
+        }
+        return 2.0 * common / (a.size() + b.size());
+    }
+}
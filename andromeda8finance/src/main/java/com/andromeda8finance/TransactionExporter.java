@@ -0,0 +1,177 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams transactions to CSV or JSON.
+ *
+ * Rows are written one at a time through a fixed-size buffer on top of a file
+ * channel, so memory use stays flat no matter how many rows are exported.
+ * A failed or interrupted export deletes the partial file. Usable headless:
+ * nothing here depends on the UI.
+ */
+public final class TransactionExporter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public enum Format {
+        CSV, JSON;
+
+        /**
+         * Picks the format from a file name such as "march.csv" or "march.json.gz".
+         */
+        public static Format fromFileName(String name) {
+            String n = name.toLowerCase();
+            if (n.endsWith(".gz")) n = n.substring(0, n.length() - 3);
+            return n.endsWith(".json") ? JSON : CSV;
+        }
+    }
+
+    private TransactionExporter() {}
+
+    /**
+     * Exports the rows dated within [start, end] (either bound may be null).
+     *
+     * @return the number of rows written
+     */
+    public static long exportRange(Iterable<Transaction> rows, LocalDate start, LocalDate end,
+                                   Path target, Format format, boolean gzip) throws IOException {
+        return export(rows, Andromeda8FinanceApp.periodFilter(start, end), target, format, gzip);
+    }
+
+    /**
+     * Exports the rows accepted by {@code filter}.
+     *
+     * @return the number of rows written
+     */
+    public static long export(Iterable<Transaction> rows, Predicate<Transaction> filter,
+                              Path target, Format format, boolean gzip) throws IOException {
+        boolean complete = false;
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            if (gzip) {
+                out = new GZIPOutputStream(out, BUFFER_SIZE);
+            }
+            long count;
+            try (Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                count = format == Format.JSON ? writeJson(rows, filter, w) : writeCsv(rows, filter, w);
+            }
+            complete = true;
+            return count;
+        } finally {
+            // Never leave a truncated file that looks like a finished export
+            if (!complete) Files.deleteIfExists(target);
+        }
+    }
+
+    private static long writeCsv(Iterable<Transaction> rows, Predicate<Transaction> filter, Writer w) throws IOException {
+        w.write("id,date,type,article,subArticle,wallet,amount,comment\n");
+        long count = 0;
+        for (Transaction t : rows) {
+            if (!filter.test(t)) continue;
+            w.write(Long.toString(t.getId()));
+            w.write(',');
+            w.write(t.getDate() == null ? "" : t.getDate().toString());
+            w.write(',');
+            writeCsvField(w, t.getType());
+            w.write(',');
+            writeCsvField(w, t.getArticle());
+            w.write(',');
+            writeCsvField(w, t.getSubArticle());
+            w.write(',');
+            writeCsvField(w, t.getWallet());
+            w.write(',');
+            w.write(Double.toString(t.getAmount()));
+            w.write(',');
+            writeCsvField(w, t.getComment());
+            w.write('\n');
+            count++;
+        }
+        return count;
+    }
+
+    private static void writeCsvField(Writer w, String s) throws IOException {
+        if (s == null) return;
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            w.write(s);
+            return;
+        }
+        w.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') w.write('"');
+            w.write(c);
+        }
+        w.write('"');
+    }
+
+    private static long writeJson(Iterable<Transaction> rows, Predicate<Transaction> filter, Writer w) throws IOException {
+        w.write("[\n");
+        long count = 0;
+        for (Transaction t : rows) {
+            if (!filter.test(t)) continue;
+            if (count > 0) w.write(",\n");
+            w.write("  {\"id\": ");
+            w.write(Long.toString(t.getId()));
+            w.write(", \"date\": \"");
+            w.write(t.getDate() == null ? "" : t.getDate().toString());
+            w.write("\", \"type\": ");
+            writeJsonString(w, t.getType());
+            w.write(", \"article\": ");
+            writeJsonString(w, t.getArticle());
+            w.write(", \"subArticle\": ");
+            writeJsonString(w, t.getSubArticle());
+            w.write(", \"wallet\": ");
+            writeJsonString(w, t.getWallet());
+            w.write(", \"amount\": ");
+            w.write(Double.toString(t.getAmount()));
+            w.write(", \"comment\": ");
+            writeJsonString(w, t.getComment());
+            w.write('}');
+            count++;
+        }
+        w.write("\n]\n");
+        return count;
+    }
+
+    private static void writeJsonString(Writer w, String s) throws IOException {
+        w.write('"');
+        if (s != null) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"' -> w.write("\\\"");
+                    case '\\' -> w.write("\\\\");
+                    case '\n' -> w.write("\\n");
+                    case '\r' -> w.write("\\r");
+                    case '\t' -> w.write("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            w.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            w.write(c);
+                        }
+                    }
+                }
+            }
+        }
+        w.write('"');
+    }
+}
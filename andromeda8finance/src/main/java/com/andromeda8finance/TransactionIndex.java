@@ -0,0 +1,269 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import com.andromeda8finance.Andromeda8FinanceApp.TransactionKey;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Primary index over the transactions list: id -> transaction, id -> position.
+ *
+ * Adds, edits and deletes made through this class are keyed operations and are
+ * journaled, so storage backends can persist just the rows that changed. Deletes
+ * keep the list in insertion order. Positions are tracked as insertion slots: a
+ * delete leaves a tombstone on its slot, counted in a Fenwick tree, so a row's
+ * position is its slot minus the tombstones before it. Slots are renumbered once
+ * tombstones outnumber live rows or appends run out of slots.
+ *
+ * Changes made to the list directly (loading, external reloads) are picked up by
+ * a listener: rows without an id get one, and the slots are renumbered on the
+ * next keyed change. Changes read back from storage are applied with
+ * {@link #applyFromStorage} and {@link #removeFromStorage}, which are not journaled.
+ *
+ * For each journaled edit or delete of a stored row, the row's content before the
+ * first local change is kept, so a merge with the stored ledger can tell a local
+ * change from a change made to the storage by someone else.
+ */
+class TransactionIndex {
+
+    private final ObservableList<Transaction> list;
+    private final Map<Long, Transaction> byId = new HashMap<>();
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private int[] tombstoneTree = new int[1];   // Fenwick tree over slots, 1-based
+    private int nextSlot;
+    private int tombstones;
+    private boolean positionsValid;
+    private boolean selfChange;
+    private long lastId;
+
+    // Journal of changes not yet persisted
+    private final Map<Long, Transaction> pendingUpserts = new LinkedHashMap<>();
+    private final Set<Long> pendingDeletes = new LinkedHashSet<>();
+    // Content as of the last load or save, for pending rows that existed then
+    private final Map<Long, TransactionKey> pendingBase = new HashMap<>();
+
+    TransactionIndex(ObservableList<Transaction> list) {
+        this.list = list;
+        for (Transaction t : list) register(t);
+        list.addListener((ListChangeListener<Transaction>) c -> {
+            if (selfChange) return;
+            positionsValid = false;
+            while (c.next()) {
+                if (c.wasPermutated()) continue;
+                for (Transaction t : c.getRemoved()) {
+                    if (byId.get(t.getId()) == t) byId.remove(t.getId());
+                }
+                for (Transaction t : c.getAddedSubList()) register(t);
+            }
+        });
+    }
+
+    /**
+     * Returns a new id: current time in milliseconds shifted left by 20 bits plus
+     * random low bits, so ids are increasing in this process and very unlikely to
+     * collide with ids created on another machine sharing the same file.
+     */
+    synchronized long nextId() {
+        long candidate = (System.currentTimeMillis() << 20) | ThreadLocalRandom.current().nextInt(1 << 20);
+        lastId = Math.max(candidate, lastId + 1);
+        return lastId;
+    }
+
+    Transaction get(long id) {
+        return byId.get(id);
+    }
+
+    boolean contains(Transaction t) {
+        return t != null && byId.get(t.getId()) == t;
+    }
+
+    /**
+     * Appends a new transaction, assigning it an id.
+     */
+    void add(Transaction t) {
+        t.setId(nextId());
+        byId.put(t.getId(), t);
+        if (positionsValid && nextSlot < tombstoneTree.length - 1) {
+            slots.put(t.getId(), nextSlot++);
+        } else {
+            positionsValid = false;
+        }
+        mutate(() -> list.add(t));
+        pendingUpserts.put(t.getId(), t);
+    }
+
+    /**
+     * Applies {@code edit} to the transaction with the given id and notifies list observers.
+     */
+    boolean update(long id, Consumer<Transaction> edit) {
+        Transaction t = byId.get(id);
+        if (t == null) return false;
+        if (!pendingUpserts.containsKey(id)) pendingBase.putIfAbsent(id, TransactionKey.of(t));
+        pendingUpserts.put(id, t);
+        replace(t, edit);
+        return true;
+    }
+
+    /**
+     * Applies a change read from storage: like {@link #update}, but not journaled.
+     */
+    boolean applyFromStorage(long id, Consumer<Transaction> edit) {
+        Transaction t = byId.get(id);
+        if (t == null) return false;
+        replace(t, edit);
+        return true;
+    }
+
+    private void replace(Transaction t, Consumer<Transaction> edit) {
+        edit.accept(t);
+        int pos = positionOf(t.getId());
+        mutate(() -> list.set(pos, t));
+    }
+
+    boolean delete(long id) {
+        Transaction t = byId.remove(id);
+        if (t == null) return false;
+        if (!pendingUpserts.containsKey(id)) pendingBase.putIfAbsent(id, TransactionKey.of(t));
+        int pos = positionOf(id);
+        bury(slots.remove(id));
+        mutate(() -> list.remove(pos));
+        if (tombstones > list.size()) positionsValid = false;
+        pendingUpserts.remove(id);
+        pendingDeletes.add(id);
+        return true;
+    }
+
+    /**
+     * Deletes all given ids in a single pass over the list.
+     */
+    int deleteAll(Collection<Long> ids) {
+        return deleteAll(ids, true);
+    }
+
+    /**
+     * Removes rows that were deleted in storage: like {@link #deleteAll}, but not journaled.
+     */
+    int removeFromStorage(Collection<Long> ids) {
+        return deleteAll(ids, false);
+    }
+
+    private int deleteAll(Collection<Long> ids, boolean journal) {
+        Set<Transaction> doomed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Long id : ids) {
+            Transaction t = byId.remove(id);
+            if (t == null) continue;
+            doomed.add(t);
+            if (journal) {
+                if (!pendingUpserts.containsKey(id)) pendingBase.putIfAbsent(id, TransactionKey.of(t));
+                pendingUpserts.remove(id);
+                pendingDeletes.add(id);
+            }
+        }
+        if (doomed.isEmpty()) return 0;
+        // ObservableList.removeAll removes (and shifts) one row at a time, so compact once instead
+        List<Transaction> kept = new ArrayList<>(list.size() - doomed.size());
+        for (Transaction t : list) {
+            if (!doomed.contains(t)) kept.add(t);
+        }
+        mutate(() -> list.setAll(kept));
+        positionsValid = false;
+        return doomed.size();
+    }
+
+    boolean isPendingUpsert(long id) {
+        return pendingUpserts.containsKey(id);
+    }
+
+    boolean isPendingDelete(long id) {
+        return pendingDeletes.contains(id);
+    }
+
+    /**
+     * Content of a pending row as of the last load or save, or null if the row was
+     * added since (or was not changed).
+     */
+    TransactionKey baseOf(long id) {
+        return pendingBase.get(id);
+    }
+
+    Collection<Transaction> pendingUpserts() {
+        return new ArrayList<>(pendingUpserts.values());
+    }
+
+    Collection<Long> pendingDeletes() {
+        return new ArrayList<>(pendingDeletes);
+    }
+
+    /**
+     * Forgets journaled changes once they have been persisted.
+     */
+    void clearPending(Collection<Transaction> upserts, Collection<Long> deletes) {
+        for (Transaction t : upserts) {
+            pendingUpserts.remove(t.getId(), t);
+            if (!pendingDeletes.contains(t.getId())) pendingBase.remove(t.getId());
+        }
+        for (Long id : deletes) {
+            pendingDeletes.remove(id);
+            if (!pendingUpserts.containsKey(id)) pendingBase.remove(id);
+        }
+    }
+
+    private void register(Transaction t) {
+        if (t.getId() == 0 || (byId.containsKey(t.getId()) && byId.get(t.getId()) != t)) {
+            // Legacy row without an id, or an id clash: give it a fresh one and persist it
+            t.setId(nextId());
+            pendingUpserts.put(t.getId(), t);
+        } else {
+            synchronized (this) {
+                lastId = Math.max(lastId, t.getId());
+            }
+        }
+        byId.put(t.getId(), t);
+    }
+
+    private int positionOf(long id) {
+        if (!positionsValid) compactSlots();
+        int slot = slots.get(id);
+        return slot - tombstonesBefore(slot);
+    }
+
+    // Renumbers slots to the current positions, with room to append as many rows again
+    private void compactSlots() {
+        slots.clear();
+        for (int i = 0; i < list.size(); i++) {
+            slots.put(list.get(i).getId(), i);
+        }
+        nextSlot = list.size();
+        tombstones = 0;
+        tombstoneTree = new int[Math.max(16, 2 * list.size()) + 1];
+        positionsValid = true;
+    }
+
+    private void bury(int slot) {
+        tombstones++;
+        for (int i = slot + 1; i < tombstoneTree.length; i += i & -i) {
+            tombstoneTree[i]++;
+        }
+    }
+
+    private int tombstonesBefore(int slot) {
+        int count = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            count += tombstoneTree[i];
+        }
+        return count;
+    }
+
+    private void mutate(Runnable change) {
+        selfChange = true;
+        try {
+            change.run();
+        } finally {
+            selfChange = false;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import com.andromeda8finance.Andromeda8FinanceApp.TransactionKey;
+
+import java.util.*;
+
+/**
+ * Three-way merge of the transactions read back from storage into memory, against
+ * the state of the last load or save as kept by the {@link TransactionIndex} journal.
+ *
+ * Changes made only in storage come out as changed, removed and added rows; rows
+ * added, edited or deleted here since the last save are kept. Where both sides
+ * changed the same row, this app's version is kept and the conflict is reported.
+ * Transactions are matched by id; rows written by older versions have no id and
+ * are matched by content.
+ */
+final class TransactionMerge {
+
+    private final List<Transaction> changed = new ArrayList<>();
+    private final List<Long> removed = new ArrayList<>();
+    private final List<Transaction> added = new ArrayList<>();
+    private final List<String> conflicts = new ArrayList<>();
+
+    private TransactionMerge() {
+    }
+
+    /**
+     * Compares {@code stored} with {@code memory}, the list indexed by {@code index}.
+     * Rows in {@code inEditor} that changed in storage are reported, since saving the
+     * editor overwrites that change.
+     */
+    static TransactionMerge of(List<Transaction> memory, TransactionIndex index, Set<Transaction> inEditor,
+                               List<Transaction> stored) {
+        TransactionMerge merge = new TransactionMerge();
+        List<String> conflicts = merge.conflicts;
+
+        Map<Long, Transaction> onDisk = new HashMap<>();
+        Map<TransactionKey, Integer> withoutId = new HashMap<>();
+        for (Transaction t : stored) {
+            if (t.getId() == 0) {
+                withoutId.merge(TransactionKey.of(t), 1, Integer::sum);
+            } else {
+                onDisk.put(t.getId(), t);
+            }
+        }
+
+        for (Transaction t : memory) {
+            long id = t.getId();
+            Transaction fromFile = onDisk.remove(id);
+            boolean localChange = index.isPendingUpsert(id);
+            TransactionKey base = index.baseOf(id);
+            if (fromFile == null) {
+                if (!withoutId.isEmpty() && takeOne(withoutId, TransactionKey.of(t))) continue;
+                if (localChange && base == null) continue; // added here
+                if (localChange) {
+                    conflicts.add("The transaction " + Andromeda8FinanceApp.describe(t) + " was changed here but"
+                            + " removed in the file; keeping it.");
+                    continue;
+                }
+                merge.removed.add(id);
+            } else {
+                TransactionKey fileKey = TransactionKey.of(fromFile);
+                if (fileKey.equals(TransactionKey.of(t))) continue;
+                if (localChange) {
+                    if (fileKey.equals(base)) continue; // only changed here
+                    conflicts.add("The transaction " + Andromeda8FinanceApp.describe(t) + " was changed both here"
+                            + " and in the file; keeping this app's version.");
+                    continue;
+                }
+                merge.changed.add(fromFile);
+            }
+            if (inEditor.contains(t)) {
+                conflicts.add("The transaction " + Andromeda8FinanceApp.describe(t) + " open in an editor was "
+                        + (fromFile == null ? "removed" : "changed") + " in the file. Saving the editor will "
+                        + (fromFile == null ? "add it again." : "overwrite that change."));
+            }
+        }
+
+        // What is left on disk is new there, or was deleted here
+        for (Transaction fromFile : onDisk.values()) {
+            if (index.isPendingDelete(fromFile.getId())) {
+                TransactionKey base = index.baseOf(fromFile.getId());
+                if (base != null && !base.equals(TransactionKey.of(fromFile))) {
+                    conflicts.add("The transaction " + Andromeda8FinanceApp.describe(fromFile) + " was deleted here"
+                            + " but changed in the file; it stays deleted.");
+                }
+            } else {
+                merge.added.add(fromFile);
+            }
+        }
+        for (Transaction t : stored) {
+            if (t.getId() == 0 && takeOne(withoutId, TransactionKey.of(t))) merge.added.add(t);
+        }
+        return merge;
+    }
+
+    // Removes one occurrence of key from a multiset; false if there was none
+    private static boolean takeOne(Map<TransactionKey, Integer> counts, TransactionKey key) {
+        Integer n = counts.get(key);
+        if (n == null) return false;
+        if (n == 1) counts.remove(key);
+        else counts.put(key, n - 1);
+        return true;
+    }
+
+    /**
+     * Rows read from storage whose content replaces the row with the same id.
+     */
+    List<Transaction> changed() {
+        return changed;
+    }
+
+    List<Long> removed() {
+        return removed;
+    }
+
+    /**
+     * Rows new in storage, to be appended to the list.
+     */
+    List<Transaction> added() {
+        return added;
+    }
+
+    List<String> conflicts() {
+        return conflicts;
+    }
+
+    boolean isEmpty() {
+        return changed.isEmpty() && removed.isEmpty() && added.isEmpty();
+    }
+
+    /**
+     * Applies the changed and removed rows through {@code index} without journaling
+     * them. The added rows are left to the caller.
+     */
+    void applyChanges(TransactionIndex index) {
+        for (Transaction fromFile : changed) {
+            index.applyFromStorage(fromFile.getId(), t -> {
+                t.setDate(fromFile.getDate());
+                t.setType(fromFile.getType());
+                t.setArticle(fromFile.getArticle());
+                t.setSubArticle(fromFile.getSubArticle());
+                t.setWallet(fromFile.getWallet());
+                t.setAmount(fromFile.getAmount());
+                t.setComment(fromFile.getComment());
+                t.setReconciled(fromFile.isReconciled());
+            });
+        }
+        if (!removed.isEmpty()) index.removeFromStorage(removed);
+    }
+}
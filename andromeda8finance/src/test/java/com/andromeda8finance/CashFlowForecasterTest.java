@@ -0,0 +1,26 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CashFlowForecasterTest {
+
+    @Test
+    void lastCheckpointIsTheEndOfTheHorizon() {
+        CashFlowForecaster forecaster = new CashFlowForecaster(new Transaction[0], LocalDate.of(2024, 1, 1));
+        for (int days : new int[] {28, 30, 3}) {
+            CashFlowForecaster.Forecast forecast = forecaster.forecast("Cash", 100, days, 64, 1);
+            int[] checkpoints = forecast.checkpointDays();
+            assertEquals(0, checkpoints[0]);
+            assertEquals(days, checkpoints[checkpoints.length - 1]);
+            for (int c = 1; c < checkpoints.length; c++) {
+                assertTrue(checkpoints[c] > checkpoints[c - 1], "checkpoints increase for " + days + " days");
+            }
+            assertEquals(checkpoints.length, forecast.bands()[0].length);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.StringDictionary;
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import com.andromeda8finance.Andromeda8FinanceApp.Wallet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class H2LedgerRepositoryTest {
+
+    private static final int ROWS = 20_000;
+
+    @TempDir
+    Path dir;
+
+    private static Transaction row(long id, String type, double amount, LocalDate date) {
+        Transaction t = new Transaction(date, "Food", "", "Cash", amount, "row " + id);
+        t.setId(id);
+        t.setType(type);
+        return t;
+    }
+
+    private H2LedgerRepository seeded() throws Exception {
+        H2LedgerRepository repo = new H2LedgerRepository(dir.resolve("ledger"), new StringDictionary());
+        List<Transaction> rows = new ArrayList<>(ROWS);
+        for (int i = 1; i <= ROWS; i++) {
+            rows.add(row(i, "Expense", 1, LocalDate.of(2024, 1, 1).plusDays(i % 365)));
+        }
+        repo.saveAll(new ArrayList<>(), List.of(new Wallet("Cash", 0)), rows);
+        return repo;
+    }
+
+    @Test
+    void periodsMatchTheJsonBackend() throws Exception {
+        List<Transaction> rows = List.of(
+                row(1, "Expense", 5, LocalDate.of(2024, 1, 10)),
+                row(2, "Income", 7, LocalDate.of(2024, 2, 10)),
+                row(3, "Expense", 11, null));
+        List<LedgerRepository> repos = List.of(
+                new H2LedgerRepository(dir.resolve("periods"), new StringDictionary()),
+                new JsonLedgerRepository(dir.resolve("periods.json"), new StringDictionary()));
+        for (LedgerRepository repo : repos) {
+            try (repo) {
+                repo.saveAll(new ArrayList<>(), List.of(new Wallet("Cash", 0)), rows);
+                LocalDate from = LocalDate.of(2024, 2, 1);
+                assertEquals(List.of(2L, 3L), repo.findTransactions(from, null).stream().map(Transaction::getId).sorted().toList());
+                assertEquals(7 - 11, repo.sumByWallet(from, null).get("Cash"), 1e-9);
+                assertEquals(-5 - 11, repo.sumByArticle(null, LocalDate.of(2024, 1, 31)).get("Food"), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void cancelledQueryThrowsCancellation() throws Exception {
+        try (H2LedgerRepository repo = seeded()) {
+            QueryExecutor.Cancellation cancellation = new QueryExecutor.Cancellation();
+            cancellation.cancel();
+            assertThrows(CancellationException.class,
+                    () -> cancellation.runAs(() -> repo.findTransactions(null, null)));
+        }
+    }
+
+    @Test
+    void savesAfterQueriesWereCancelled() throws Exception {
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try (H2LedgerRepository repo = seeded()) {
+            for (int round = 0; round < 5; round++) {
+                QueryExecutor.Cancellation cancellation = new QueryExecutor.Cancellation();
+                Future<List<Transaction>> query = reader.submit(
+                        () -> cancellation.runAs(() -> repo.findTransactions(null, null)));
+                Thread.sleep(5 + round * 5);
+                cancellation.cancel();
+                try {
+                    assertEquals(ROWS, query.get().size());
+                } catch (ExecutionException e) {
+                    assertInstanceOf(CancellationException.class, e.getCause());
+                }
+                assertFalse(reader.submit(() -> Thread.currentThread().isInterrupted()).get());
+            }
+
+            Transaction added = row(ROWS + 1, "Income", 10, LocalDate.of(2025, 1, 1));
+            repo.saveChanges(new ArrayList<>(), List.of(new Wallet("Cash", 0)), List.of(added),
+                    List.of(added), List.of(1L));
+            assertEquals(ROWS, repo.findTransactions(null, null).size());
+            assertEquals(-(ROWS - 1) + 10, repo.sumByWallet(null, null).get("Cash"), 1e-9);
+        } finally {
+            reader.shutdown();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.StringDictionary;
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import com.andromeda8finance.Andromeda8FinanceApp.Wallet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonLedgerRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private static Transaction row(long id, double amount, String comment) {
+        Transaction t = new Transaction(LocalDate.of(2024, 1, 1), "Food", "", "Cash", amount, comment);
+        t.setId(id);
+        t.setType("Expense");
+        return t;
+    }
+
+    @Test
+    void upsertKeepsLegacyRowsWithoutIds() throws Exception {
+        try (JsonLedgerRepository repo = new JsonLedgerRepository(dir.resolve("ledger.json"), new StringDictionary())) {
+            repo.saveAll(new ArrayList<>(), List.of(new Wallet("Cash", 0)),
+                    List.of(row(0, 1, "legacy a"), row(7, 2, "numbered"), row(0, 3, "legacy b")));
+
+            repo.upsertTransactions(List.of(row(7, 20, "edited"), row(0, 4, "legacy c"), row(8, 5, "new")));
+            repo.deleteTransactions(List.of(0L));
+
+            List<String> comments = repo.loadAll().transactions.stream().map(Transaction::getComment).toList();
+            assertEquals(List.of("legacy a", "edited", "legacy b", "legacy c", "new"), comments);
+        }
+    }
+}
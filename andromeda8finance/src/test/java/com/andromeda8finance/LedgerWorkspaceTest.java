@@ -0,0 +1,57 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.StringDictionary;
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import com.andromeda8finance.Andromeda8FinanceApp.Wallet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerWorkspaceTest {
+
+    @TempDir
+    Path dir;
+
+    private static Transaction row(long id, String type, String article, double amount, LocalDate date) {
+        Transaction t = new Transaction(date, article, "", "Cash", amount, "");
+        t.setId(id);
+        t.setType(type);
+        return t;
+    }
+
+    @Test
+    void walletBalancesCloseAtTheEndDateInBothBackends() throws Exception {
+        StringDictionary dictionary = new StringDictionary();
+        List<Transaction> rows = List.of(
+                row(1, "Income", "Salary", 1000, LocalDate.of(2024, 1, 5)),
+                row(2, "Expense", "Food", 30, LocalDate.of(2024, 2, 6)),
+                row(3, "Expense", "Food", 20, LocalDate.of(2024, 3, 6)));
+        try (LedgerRepository h2 = new H2LedgerRepository(dir.resolve("db"), dictionary);
+             LedgerRepository json = new JsonLedgerRepository(dir.resolve("file.json"), dictionary)) {
+            h2.saveAll(new ArrayList<>(), List.of(new Wallet("Cash", 100)), rows);
+            json.saveAll(new ArrayList<>(), List.of(new Wallet("Cash", 100)), rows);
+        }
+        LedgerWorkspace workspace = LedgerWorkspace.open(List.of(dir.resolve("db.mv.db"), dir.resolve("file.json")),
+                LedgerWorkspace.NameMapping.none(), dictionary);
+        assertEquals(3, workspace.ledgers().get(0).transactionCount());
+
+        LocalDate from = LocalDate.of(2024, 2, 1);
+        LocalDate to = LocalDate.of(2024, 2, 29);
+        for (LedgerWorkspace.Consolidation c : List.of(
+                workspace.consolidate(from, to, null),
+                workspace.consolidate(from, to, t -> !"Salary".equals(t.getArticle()) || t.getAmount() > 0))) {
+            LedgerWorkspace.ConsolidatedRow food = c.byArticle().stream()
+                    .filter(r -> r.name().equals("Food")).findFirst().orElseThrow();
+            assertEquals(List.of(-30.0, -30.0), List.copyOf(food.perLedger().values()));
+            assertTrue(c.byArticle().stream().noneMatch(r -> r.name().equals("Salary")));
+            LedgerWorkspace.ConsolidatedRow cash = c.byWallet().get(0);
+            assertEquals(List.of(1070.0, 1070.0), List.copyOf(cash.perLedger().values()));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionIndexTest {
+
+    private static Transaction row(double amount) {
+        Transaction t = new Transaction(LocalDate.of(2024, 1, 1).plusDays((long) amount % 60), "Food", "", "Cash",
+                amount, "row " + amount);
+        t.setType("Expense");
+        return t;
+    }
+
+    @Test
+    void randomChangesKeepTheListInOrder() {
+        ObservableList<Transaction> list = FXCollections.observableArrayList();
+        TransactionIndex index = new TransactionIndex(list);
+        DuplicateIndex duplicates = new DuplicateIndex(1, 0);
+        duplicates.bind(list);
+        List<Transaction> expected = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(42);
+
+        for (int step = 0; step < 20_000; step++) {
+            int op = random.nextInt(100);
+            if (op < 45 || expected.isEmpty()) {
+                Transaction t = row(step);
+                index.add(t);
+                expected.add(t);
+            } else if (op < 75) {
+                Transaction t = expected.remove(random.nextInt(expected.size()));
+                assertTrue(index.delete(t.getId()));
+            } else if (op < 80) {
+                List<Long> ids = new ArrayList<>();
+                for (int i = random.nextInt(20); i > 0 && !expected.isEmpty(); i--) {
+                    ids.add(expected.remove(random.nextInt(expected.size())).getId());
+                }
+                assertEquals(ids.size(), index.deleteAll(ids));
+            } else if (op < 95) {
+                Transaction t = expected.get(random.nextInt(expected.size()));
+                double amount = -step;
+                assertTrue(index.update(t.getId(), u -> u.setAmount(amount)));
+            } else {
+                // A change made to the list directly, as when loading or reloading
+                Transaction t = row(step);
+                t.setId(index.nextId());
+                list.add(t);
+                expected.add(t);
+            }
+            if (step % 97 == 0) {
+                assertEquals(expected, list, "after step " + step);
+            }
+        }
+        assertEquals(expected, list);
+        for (Transaction t : expected) {
+            assertSame(t, index.get(t.getId()));
+        }
+        assertEquals(expected.size(), duplicates.size());
+    }
+
+    @Test
+    void deletedRowsLeaveNoStaleDuplicates() {
+        ObservableList<Transaction> list = FXCollections.observableArrayList();
+        TransactionIndex index = new TransactionIndex(list);
+        DuplicateIndex duplicates = new DuplicateIndex(1, 0);
+        duplicates.bind(list);
+        Transaction a = row(10);
+        Transaction b = row(20);
+        Transaction c = row(30);
+        index.add(a);
+        index.add(b);
+        index.add(c);
+
+        index.delete(b.getId());
+
+        assertEquals(List.of(a, c), list);
+        assertEquals(2, duplicates.size());
+        assertNull(duplicates.findDuplicate(row(20), null));
+        assertSame(c, duplicates.findDuplicate(row(30), null));
+    }
+}
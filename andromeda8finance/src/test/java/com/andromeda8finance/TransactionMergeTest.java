@@ -0,0 +1,116 @@
+package com.andromeda8finance;
+
+import com.andromeda8finance.Andromeda8FinanceApp.Transaction;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionMergeTest {
+
+    private static Transaction row(long id, double amount, String comment) {
+        Transaction t = new Transaction(LocalDate.of(2024, 1, 1), "Food", "", "Cash", amount, comment);
+        t.setId(id);
+        t.setType("Expense");
+        return t;
+    }
+
+    // The file as last loaded: rows 1..5, amounts 10..50
+    private static List<Transaction> base() {
+        List<Transaction> rows = new ArrayList<>();
+        for (int id = 1; id <= 5; id++) rows.add(row(id, id * 10, "row " + id));
+        return rows;
+    }
+
+    private static Transaction find(List<Transaction> rows, long id) {
+        return rows.stream().filter(t -> t.getId() == id).findFirst().orElse(null);
+    }
+
+    private static TransactionMerge mergeInto(ObservableList<Transaction> memory, TransactionIndex index,
+                                              List<Transaction> disk) {
+        TransactionMerge merge = TransactionMerge.of(memory, index, Set.of(), disk);
+        merge.applyChanges(index);
+        memory.addAll(merge.added());
+        return merge;
+    }
+
+    @Test
+    void localAndExternalChangesToDifferentRowsAreBothKept() {
+        ObservableList<Transaction> memory = FXCollections.observableArrayList(base());
+        TransactionIndex index = new TransactionIndex(memory);
+        Transaction localAdd = row(0, 99, "added here");
+        index.add(localAdd);
+        index.update(1, t -> t.setAmount(11));
+        index.delete(2);
+
+        List<Transaction> disk = base();
+        disk.set(2, row(3, 33, "edited in the file"));
+        disk.remove(3); // row 4
+        disk.add(row(100, 7, "added in the file"));
+
+        TransactionMerge merge = mergeInto(memory, index, disk);
+
+        assertEquals(List.of(), merge.conflicts());
+        assertEquals(List.of(1L, 3L, 5L, localAdd.getId(), 100L), memory.stream().map(Transaction::getId).toList());
+        assertEquals(11, find(memory, 1).getAmount());
+        assertEquals(33, find(memory, 3).getAmount());
+        assertEquals("edited in the file", find(memory, 3).getComment());
+        // Only the local changes are journaled for the next save
+        assertTrue(index.isPendingUpsert(1));
+        assertTrue(index.isPendingUpsert(localAdd.getId()));
+        assertTrue(index.isPendingDelete(2));
+        assertFalse(index.isPendingUpsert(3));
+        assertFalse(index.isPendingUpsert(100));
+    }
+
+    @Test
+    void conflictingChangesKeepThisAppsVersion() {
+        ObservableList<Transaction> memory = FXCollections.observableArrayList(base());
+        TransactionIndex index = new TransactionIndex(memory);
+        index.update(1, t -> t.setAmount(11));
+        index.update(2, t -> t.setAmount(22));
+        index.delete(3);
+        index.update(4, t -> t.setAmount(44));
+
+        List<Transaction> disk = base();
+        disk.set(0, row(1, 111, "row 1"));   // changed on both sides
+        disk.set(2, row(3, 333, "row 3"));   // deleted here, changed there
+        disk.set(3, row(4, 44, "row 4"));    // the same change on both sides
+        disk.remove(1);                      // changed here, removed there
+
+        TransactionMerge merge = mergeInto(memory, index, disk);
+
+        assertEquals(3, merge.conflicts().size(), merge.conflicts().toString());
+        assertTrue(merge.isEmpty());
+        assertEquals(List.of(1L, 2L, 4L, 5L), memory.stream().map(Transaction::getId).toList());
+        assertEquals(11, find(memory, 1).getAmount());
+        assertEquals(22, find(memory, 2).getAmount());
+        assertEquals(44, find(memory, 4).getAmount());
+    }
+
+    @Test
+    void legacyRowsWithoutIdsAreMatchedByContent() {
+        List<Transaction> legacy = List.of(row(0, 5, "coffee"), row(0, 5, "coffee"), row(0, 8, "lunch"));
+        ObservableList<Transaction> memory = FXCollections.observableArrayList();
+        for (Transaction t : legacy) memory.add(row(0, t.getAmount(), t.getComment()));
+        TransactionIndex index = new TransactionIndex(memory);
+        assertTrue(memory.stream().allMatch(t -> t.getId() != 0));
+
+        List<Transaction> disk = new ArrayList<>(legacy);
+        disk.add(row(0, 5, "coffee"));
+        disk.add(row(0, 12, "dinner"));
+
+        TransactionMerge merge = mergeInto(memory, index, disk);
+
+        assertEquals(List.of(), merge.conflicts());
+        assertTrue(merge.removed().isEmpty());
+        assertEquals(List.of("coffee", "dinner"), merge.added().stream().map(Transaction::getComment).toList());
+        assertEquals(5, memory.size());
+        assertEquals(3, memory.stream().filter(t -> "coffee".equals(t.getComment())).count());
+        assertEquals(5, new HashSet<>(memory.stream().map(Transaction::getId).toList()).size());
+    }
+}